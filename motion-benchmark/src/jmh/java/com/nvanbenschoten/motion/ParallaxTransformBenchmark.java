@@ -0,0 +1,82 @@
+package com.nvanbenschoten.motion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParallaxTransformBenchmark {
+
+    private static final int TILT_COUNT = 256;
+
+    @Param({"false", "true"})
+    public boolean scaledIntensities;
+
+    /**
+     * The maximum jump, where a negative value disables the clamp.
+     */
+    @Param({"-1", "0.1"})
+    public float maximumJump;
+
+    private ParallaxTransform mTransform;
+    private float[] mTilts;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mTransform = new ParallaxTransform();
+        mTransform.setScaledIntensities(scaledIntensities);
+        mTransform.setMaximumJump(maximumJump);
+        mTransform.configure(2048, 1365, 1080, 1920);
+
+        // Alternate large and small steps so the max jump clamp is hit on some events
+        mTilts = new float[TILT_COUNT];
+        for (int i = 0; i < TILT_COUNT; i++) {
+            mTilts[i] = (float) Math.sin(2 * Math.PI * i / TILT_COUNT) * ((i % 2 == 0) ? 1f : 0.5f);
+        }
+    }
+
+    /**
+     * Mirrors the per-event work of ParallaxImageView#setTranslate, up to the matrix values.
+     */
+    @Benchmark
+    public float setTranslate() {
+        mIndex = (mIndex + 1) % TILT_COUNT;
+        mTransform.setTranslate(mTilts[mIndex], -mTilts[TILT_COUNT - 1 - mIndex]);
+        return mTransform.getScale() + mTransform.getDx() + mTransform.getDy();
+    }
+
+    /**
+     * Mirrors the work of ParallaxImageView#configureMatrix on a size or intensity change.
+     */
+    @Benchmark
+    public float configure() {
+        mTransform.configure(2048, 1365, 1080, 1920);
+        return mTransform.getScale() + mTransform.getDx() + mTransform.getDy();
+    }
+
+}
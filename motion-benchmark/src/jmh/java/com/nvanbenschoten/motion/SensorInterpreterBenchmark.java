@@ -0,0 +1,103 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorInterpreterBenchmark {
+
+    private static final int EVENT_COUNT = 256;
+
+    /**
+     * The screen rotation, one of the {@link android.view.Surface} rotation constants.
+     */
+    @Param({"0", "1", "2", "3"})
+    public int rotation;
+
+    @Param({"1", "2", "4"})
+    public float tiltSensitivity;
+
+    @Param({"false", "true"})
+    public boolean quaternionEngine;
+
+    private SensorInterpreter mSensorInterpreter;
+    private SensorEvent[] mEvents;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws Exception {
+        mSensorInterpreter = new SensorInterpreter();
+        mSensorInterpreter.setTiltSensitivity(tiltSensitivity);
+        mSensorInterpreter.setQuaternionEngineEnabled(quaternionEngine);
+        mSensorInterpreter.setTargetVector(new float[]{0f, 0f, 0f, 1f});
+        mEvents = createSensorEventSweep(EVENT_COUNT);
+    }
+
+    @Benchmark
+    public float interpretSensorEvent() {
+        final float[] vectors = mSensorInterpreter.interpretSensorEvent(rotation, nextEvent());
+        return vectors[0] + vectors[1] + vectors[2];
+    }
+
+    @Benchmark
+    public float interpretSensorEventPitchAndRoll() {
+        final float[] vectors = mSensorInterpreter.interpretSensorEvent(rotation, nextEvent(),
+                SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+        return vectors[1] + vectors[2];
+    }
+
+    private SensorEvent nextEvent() {
+        mIndex = (mIndex + 1) % EVENT_COUNT;
+        return mEvents[mIndex];
+    }
+
+    /**
+     * Creates sensor events tilting back and forth by up to 45 degrees around a diagonal axis,
+     * including the trailing accuracy value reported by most devices.
+     */
+    static SensorEvent[] createSensorEventSweep(int count) throws Exception {
+        Constructor<SensorEvent> constructor = SensorEvent.class.getDeclaredConstructor(int.class);
+        constructor.setAccessible(true);
+
+        SensorEvent[] events = new SensorEvent[count];
+        for (int i = 0; i < count; i++) {
+            double angle = Math.sin(2 * Math.PI * i / count) * Math.PI / 4;
+            events[i] = constructor.newInstance(5);
+            events[i].values[0] = (float) (Math.sin(angle / 2) * 0.6);
+            events[i].values[1] = (float) (Math.sin(angle / 2) * 0.8);
+            events[i].values[2] = 0f;
+            events[i].values[3] = (float) Math.cos(angle / 2);
+            events[i].values[4] = -1f;
+        }
+        return events;
+    }
+
+}
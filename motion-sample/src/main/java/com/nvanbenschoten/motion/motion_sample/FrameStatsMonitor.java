@@ -0,0 +1,142 @@
+package com.nvanbenschoten.motion.motion_sample;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class FrameStatsMonitor implements Choreographer.FrameCallback {
+
+    // A frame counts as janky once it took longer than one and a half vsync intervals,
+    // meaning at least one vsync was missed
+    private static final float JANK_THRESHOLD = 1.5f;
+
+    private final long mJankThresholdNanos;
+
+    private boolean mRunning;
+    private long mLastFrameTimeNanos;
+
+    // Counters for the current window, cleared by takeWindow
+    private int mFrames;
+    private int mJankyFrames;
+    private long mWindowStartNanos;
+
+    private int mTotalJankyFrames;
+
+    // Values of the last window taken
+    private float mFramesPerSecond;
+    private int mWindowJankyFrames;
+
+    /**
+     * Creates a monitor for a display refreshing at the given rate.
+     *
+     * @param refreshRate the display refresh rate in frames per second
+     */
+    FrameStatsMonitor(float refreshRate) {
+        if (refreshRate < 1) {
+            refreshRate = 60;
+        }
+
+        mJankThresholdNanos = (long) (JANK_THRESHOLD * 1000000000L / refreshRate);
+    }
+
+    /**
+     * Starts counting frames. Must be called on the main thread.
+     */
+    void start() {
+        if (mRunning) return;
+
+        mRunning = true;
+        mLastFrameTimeNanos = 0;
+        mFrames = 0;
+        mJankyFrames = 0;
+        mWindowStartNanos = System.nanoTime();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stops counting frames. Must be called on the main thread.
+     */
+    void stop() {
+        if (!mRunning) return;
+
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) return;
+
+        if (mLastFrameTimeNanos != 0) {
+            mFrames++;
+            if (frameTimeNanos - mLastFrameTimeNanos > mJankThresholdNanos) {
+                mJankyFrames++;
+                mTotalJankyFrames++;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        // Keep requesting frames so that idle time shows up as a steady frame rate
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Closes the current counting window, making its values available through
+     * {@link #getFramesPerSecond()} and {@link #getWindowJankyFrames()}, and starts a new one.
+     */
+    void takeWindow() {
+        final long now = System.nanoTime();
+        final long windowNanos = now - mWindowStartNanos;
+
+        mFramesPerSecond = windowNanos > 0 ? mFrames * 1e9f / windowNanos : 0;
+        mWindowJankyFrames = mJankyFrames;
+
+        mFrames = 0;
+        mJankyFrames = 0;
+        mWindowStartNanos = now;
+    }
+
+    /**
+     * Determines the frame rate over the last window taken.
+     *
+     * @return the frames per second
+     */
+    float getFramesPerSecond() {
+        return mFramesPerSecond;
+    }
+
+    /**
+     * Determines the number of janky frames in the last window taken.
+     *
+     * @return the janky frame count
+     */
+    int getWindowJankyFrames() {
+        return mWindowJankyFrames;
+    }
+
+    /**
+     * Determines the number of janky frames since the monitor was created.
+     *
+     * @return the total janky frame count
+     */
+    int getTotalJankyFrames() {
+        return mTotalJankyFrames;
+    }
+
+}
@@ -2,8 +2,9 @@ package com.nvanbenschoten.motion.motion_sample;
 
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.Intent;
 import android.content.pm.ActivityInfo;
-import android.graphics.BitmapFactory;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
@@ -16,6 +17,7 @@ import android.widget.CompoundButton;
 import android.widget.SeekBar;
 import android.widget.Switch;
 
+import com.nvanbenschoten.motion.ParallaxBitmapLoader;
 import com.nvanbenschoten.motion.ParallaxImageView;
 
 /*
@@ -55,10 +57,13 @@ public class ParallaxActivity extends Activity {
 
         private ParallaxImageView mBackground;
         private SeekBar mSeekBar;
+        private ParallaxBitmapLoader mBitmapLoader;
 
         private int mCurrentImage;
         private boolean mParallaxSet = true;
         private boolean mPortraitLock = true;
+        private boolean mCompositedTranslation = false;
+        private boolean mRenderCache = false;
 
         public ParallaxFragment() { }
 
@@ -67,6 +72,20 @@ public class ParallaxActivity extends Activity {
             super.onCreate(savedInstanceState);
             setRetainInstance(true);
             setHasOptionsMenu(true);
+
+            mBitmapLoader = new ParallaxBitmapLoader(getActivity());
+        }
+
+        @Override
+        public void onDestroy() {
+            mBitmapLoader.release();
+            super.onDestroy();
+        }
+
+        @Override
+        public void onDestroyView() {
+            mBitmapLoader.cancel(mBackground);
+            super.onDestroyView();
         }
 
         @Override
@@ -76,6 +95,8 @@ public class ParallaxActivity extends Activity {
             if (rootView == null) return null;
 
             mBackground = (ParallaxImageView) rootView.findViewById(android.R.id.background);
+            mBackground.setCompositedTranslationEnabled(mCompositedTranslation);
+            mBackground.setRenderCacheEnabled(mRenderCache);
             mSeekBar = (SeekBar) rootView.findViewById(android.R.id.progress);
 
             setCurrentImage();
@@ -144,6 +165,17 @@ public class ParallaxActivity extends Activity {
             if (switchItem != null)
                 switchItem.setActionView(mParallaxToggle);
 
+            // Reflect current rendering mode
+            MenuItem compositedItem = menu.findItem(R.id.action_composited);
+            if (compositedItem != null) {
+                compositedItem.setChecked(mCompositedTranslation);
+                compositedItem.setVisible(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M);
+            }
+
+            MenuItem renderCacheItem = menu.findItem(R.id.action_render_cache);
+            if (renderCacheItem != null)
+                renderCacheItem.setChecked(mRenderCache);
+
             // Set lock/ unlock orientation text
             if (mPortraitLock) {
                 getActivity().setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
@@ -162,6 +194,18 @@ public class ParallaxActivity extends Activity {
                     setCurrentImage();
                     return true;
 
+                case R.id.action_composited:
+                    mCompositedTranslation = !mCompositedTranslation;
+                    mBackground.setCompositedTranslationEnabled(mCompositedTranslation);
+                    item.setChecked(mCompositedTranslation);
+                    return true;
+
+                case R.id.action_render_cache:
+                    mRenderCache = !mRenderCache;
+                    mBackground.setRenderCacheEnabled(mRenderCache);
+                    item.setChecked(mRenderCache);
+                    return true;
+
                 case R.id.action_portrait:
                     if (mPortraitLock) {
                         getActivity().setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_SENSOR);
@@ -174,18 +218,23 @@ public class ParallaxActivity extends Activity {
                     mPortraitLock = !mPortraitLock;
                     return true;
 
+                case R.id.action_stress:
+                    startActivity(new Intent(getActivity(), StressActivity.class));
+                    return true;
+
                 default:
                     return super.onOptionsItemSelected(item);
             }
         }
 
         private void setCurrentImage() {
+            // Decode off the main thread, downsampled to the screen
             if (mCurrentImage == 0) {
-                mBackground.setImageResource(R.drawable.background_pond);
+                mBitmapLoader.loadResource(mBackground, R.drawable.background_pond);
             } else if (mCurrentImage == 1) {
-                mBackground.setImageDrawable(getResources().getDrawable(R.drawable.background_city));
+                mBitmapLoader.loadResource(mBackground, R.drawable.background_city);
             } else {
-                mBackground.setImageBitmap(BitmapFactory.decodeResource(getResources(), R.drawable.background_rocket_small));
+                mBitmapLoader.loadResource(mBackground, R.drawable.background_rocket_small);
             }
         }
 
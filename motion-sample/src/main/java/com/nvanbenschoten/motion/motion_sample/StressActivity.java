@@ -0,0 +1,338 @@
+package com.nvanbenschoten.motion.motion_sample;
+
+import android.app.Activity;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.nvanbenschoten.motion.ParallaxBitmapLoader;
+import com.nvanbenschoten.motion.ParallaxImageView;
+import com.nvanbenschoten.motion.ParallaxMetrics;
+import com.nvanbenschoten.motion.PerformanceGovernor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class StressActivity extends Activity {
+
+    private static final String TAG = "StressActivity";
+
+    private static final int ITEM_COUNT = 48;
+    private static final long STATS_INTERVAL_MS = 1000;
+
+    private static final int[] IMAGES = {
+            R.drawable.background_pond,
+            R.drawable.background_city,
+            R.drawable.background_ski,
+            R.drawable.background_rocket_small
+    };
+
+    private static final int[] SAMPLING_RATES = {
+            SensorManager.SENSOR_DELAY_FASTEST,
+            SensorManager.SENSOR_DELAY_GAME,
+            SensorManager.SENSOR_DELAY_UI,
+            SensorManager.SENSOR_DELAY_NORMAL
+    };
+
+    private static final int[] SAMPLING_RATE_TITLES = {
+            R.string.action_sampling_rate_fastest,
+            R.string.action_sampling_rate_game,
+            R.string.action_sampling_rate_ui,
+            R.string.action_sampling_rate_normal
+    };
+
+    private final Handler mHandler = new Handler();
+    private final Runnable mUpdateStats = new Runnable() {
+        @Override
+        public void run() {
+            updateStats();
+            mHandler.postDelayed(this, STATS_INTERVAL_MS);
+        }
+    };
+
+    private final PerformanceGovernor.OnLevelChangedListener mLevelLogger =
+            new PerformanceGovernor.OnLevelChangedListener() {
+                @Override
+                public void onLevelChanged(int previousLevel, int level, int pressure) {
+                    Log.i(TAG, "Governor level " + previousLevel + " -> " + level
+                            + " (pressure flags " + pressure + ")");
+                }
+            };
+
+    // Every parallax view created by the list, which recycles and so creates only a few
+    private final List<ParallaxImageView> mParallaxViews = new ArrayList<ParallaxImageView>();
+    private final ParallaxMetrics.Snapshot mSnapshot = new ParallaxMetrics.Snapshot();
+
+    private ParallaxBitmapLoader mBitmapLoader;
+    private FrameStatsMonitor mFrameStatsMonitor;
+    private TextView mStats;
+
+    private int mSamplingRate;
+    private boolean mAutoRegistration;
+    private boolean mPerformanceGovernor;
+    private boolean mResumed;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stress);
+
+        mBitmapLoader = new ParallaxBitmapLoader(this);
+        mStats = (TextView) findViewById(R.id.stats);
+
+        // Frame callbacks are only available from Jelly Bean, the overlay shows sensor rates below
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameStatsMonitor = new FrameStatsMonitor(
+                    getWindowManager().getDefaultDisplay().getRefreshRate());
+        }
+
+        ListView list = (ListView) findViewById(android.R.id.list);
+        list.setAdapter(new ParallaxAdapter());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mResumed = true;
+
+        for (ParallaxImageView view : mParallaxViews) {
+            registerSensorManager(view);
+        }
+
+        if (mFrameStatsMonitor != null) {
+            mFrameStatsMonitor.start();
+        }
+        mHandler.postDelayed(mUpdateStats, STATS_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onPause() {
+        mResumed = false;
+
+        for (ParallaxImageView view : mParallaxViews) {
+            unregisterSensorManager(view);
+        }
+
+        if (mFrameStatsMonitor != null) {
+            mFrameStatsMonitor.stop();
+        }
+        mHandler.removeCallbacks(mUpdateStats);
+        super.onPause();
+    }
+
+    @Override
+    protected void onDestroy() {
+        PerformanceGovernor.getInstance(this).removeOnLevelChangedListener(mLevelLogger);
+        mBitmapLoader.release();
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.stress, menu);
+
+        MenuItem samplingItem = menu.findItem(R.id.action_sampling_rate);
+        if (samplingItem != null)
+            samplingItem.setTitle(SAMPLING_RATE_TITLES[mSamplingRate]);
+
+        MenuItem autoRegistrationItem = menu.findItem(R.id.action_auto_registration);
+        if (autoRegistrationItem != null)
+            autoRegistrationItem.setChecked(mAutoRegistration);
+
+        MenuItem governorItem = menu.findItem(R.id.action_performance_governor);
+        if (governorItem != null)
+            governorItem.setChecked(mPerformanceGovernor);
+
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.action_sampling_rate:
+                mSamplingRate ++;
+                mSamplingRate %= SAMPLING_RATES.length;
+                item.setTitle(SAMPLING_RATE_TITLES[mSamplingRate]);
+
+                // Re-register every view at the new rate
+                if (mResumed) {
+                    for (ParallaxImageView view : mParallaxViews) {
+                        unregisterSensorManager(view);
+                        registerSensorManager(view);
+                    }
+                }
+                return true;
+
+            case R.id.action_auto_registration:
+                // Switch every view between explicit and visibility driven registration
+                if (mResumed) {
+                    for (ParallaxImageView view : mParallaxViews) {
+                        unregisterSensorManager(view);
+                    }
+                }
+
+                mAutoRegistration = !mAutoRegistration;
+                item.setChecked(mAutoRegistration);
+
+                if (mResumed) {
+                    for (ParallaxImageView view : mParallaxViews) {
+                        registerSensorManager(view);
+                    }
+                }
+                return true;
+
+            case R.id.action_performance_governor:
+                mPerformanceGovernor = !mPerformanceGovernor;
+                item.setChecked(mPerformanceGovernor);
+
+                // One governor watches pressure for every view, log its level changes once
+                PerformanceGovernor governor = PerformanceGovernor.getInstance(this);
+                if (mPerformanceGovernor) {
+                    governor.addOnLevelChangedListener(mLevelLogger);
+                } else {
+                    governor.removeOnLevelChangedListener(mLevelLogger);
+                }
+
+                for (ParallaxImageView view : mParallaxViews) {
+                    setPerformanceGovernor(view);
+                }
+                return true;
+
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * Starts the view's parallax effect at the current sampling rate, either right away or
+     * whenever it is visible on screen.
+     *
+     * @param view the view to register
+     */
+    private void registerSensorManager(ParallaxImageView view) {
+        if (mAutoRegistration) {
+            view.setAutoRegistrationEnabled(true, SAMPLING_RATES[mSamplingRate]);
+        } else {
+            view.registerSensorManager(SAMPLING_RATES[mSamplingRate]);
+        }
+    }
+
+    /**
+     * Stops the view's parallax effect.
+     *
+     * @param view the view to unregister
+     */
+    private void unregisterSensorManager(ParallaxImageView view) {
+        if (mAutoRegistration) {
+            view.setAutoRegistrationEnabled(false);
+        } else {
+            view.unregisterSensorManager();
+        }
+    }
+
+    /**
+     * Attaches the view to the shared performance governor, or detaches it, to match the
+     * menu toggle.
+     *
+     * @param view the view to update
+     */
+    private void setPerformanceGovernor(ParallaxImageView view) {
+        view.setPerformanceGovernor(mPerformanceGovernor ? PerformanceGovernor.getInstance(this) : null);
+    }
+
+    /**
+     * Refreshes the overlay with the frame rate and janky frames since the last update, and
+     * the sensor events received per second summed over all parallax views.
+     */
+    private void updateStats() {
+        float eventsPerSecond = 0;
+        for (ParallaxImageView view : mParallaxViews) {
+            ParallaxMetrics metrics = view.getMetrics();
+            if (metrics == null) continue;
+
+            metrics.snapshot(mSnapshot);
+            eventsPerSecond += mSnapshot.getEventsPerSecond();
+        }
+
+        if (mFrameStatsMonitor != null) {
+            mFrameStatsMonitor.takeWindow();
+            mStats.setText(getString(R.string.stress_stats,
+                    mFrameStatsMonitor.getFramesPerSecond(),
+                    mFrameStatsMonitor.getWindowJankyFrames(),
+                    mFrameStatsMonitor.getTotalJankyFrames(),
+                    eventsPerSecond, mParallaxViews.size()));
+        } else {
+            mStats.setText(getString(R.string.stress_stats_no_frames,
+                    eventsPerSecond, mParallaxViews.size()));
+        }
+    }
+
+    /**
+     * An adapter of full width parallax views cycling through the sample images, each with
+     * its own sensor registration.
+     */
+    private class ParallaxAdapter extends BaseAdapter {
+
+        @Override
+        public int getCount() {
+            return ITEM_COUNT;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return IMAGES[position % IMAGES.length];
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            ParallaxImageView view = (ParallaxImageView) convertView;
+            if (view == null) {
+                view = (ParallaxImageView) LayoutInflater.from(parent.getContext())
+                        .inflate(R.layout.list_item_stress, parent, false);
+                view.setMetricsEnabled(true);
+                setPerformanceGovernor(view);
+                mParallaxViews.add(view);
+
+                if (mResumed) {
+                    registerSensorManager(view);
+                }
+            }
+
+            // Decode off the main thread, cached after the first few items
+            mBitmapLoader.loadResource(view, IMAGES[position % IMAGES.length]);
+            return view;
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorManager;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class AdaptiveSampler {
+
+    /**
+     * The sensor is sampled at the rate requested at registration.
+     */
+    public static final int STATE_ACTIVE = 0;
+
+    /**
+     * Motion has stayed below the idle threshold long enough that the sensor is sampled at the
+     * idle sampling period.
+     */
+    public static final int STATE_IDLE = 1;
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    /**
+     * The tilt speed, in units of tilt per second, that motion must stay below to become idle.
+     */
+    private float mIdleThreshold = 0.05f;
+
+    /**
+     * The tilt speed, in units of tilt per second, that motion must exceed to become active
+     * again. Higher than the idle threshold so that the state does not flip back and forth.
+     */
+    private float mActiveThreshold = 0.15f;
+
+    /**
+     * How long motion must stay below the idle threshold before becoming idle.
+     */
+    private long mIdleDelayNanos = 2000000000L;
+
+    /**
+     * The sampling period used while idle.
+     */
+    private int mIdleSamplingPeriodUs = SensorManager.SENSOR_DELAY_UI;
+
+    // Detection state, written by the thread sensor events are interpreted on.
+    private volatile int mState = STATE_ACTIVE;
+    private float mLastX;
+    private float mLastY;
+    private long mLastTimestamp;
+    private long mStillSince;
+    private boolean mInitialized = false;
+
+    /**
+     * Whether {@link #reset()} was called since the interpreting thread last checked, so the
+     * motion history can be discarded from any thread without racing with {@link #onTilt}.
+     */
+    private volatile boolean mResetRequested = false;
+
+    /**
+     * Feeds the next interpreted tilt to the sampler.
+     *
+     * @param x         the horizontal tilt
+     * @param y         the vertical tilt
+     * @param timestamp the sensor event's timestamp in nanoseconds
+     * @return true if the state changed and the sensor should be re-registered
+     */
+    boolean onTilt(float x, float y, long timestamp) {
+        // A tilt in flight during a reset may have gone idle again, which needs re-registering
+        boolean stateChanged = false;
+        if (mResetRequested) {
+            mResetRequested = false;
+            stateChanged = (mState == STATE_IDLE);
+            mState = STATE_ACTIVE;
+            mInitialized = false;
+        }
+
+        if (!mInitialized) {
+            mLastX = x;
+            mLastY = y;
+            mLastTimestamp = timestamp;
+            mStillSince = timestamp;
+            mInitialized = true;
+            return stateChanged;
+        }
+
+        final long dtNanos = timestamp - mLastTimestamp;
+        if (dtNanos <= 0) return false;
+
+        final float speed = Math.max(Math.abs(x - mLastX), Math.abs(y - mLastY)) * NANOS_PER_SECOND / dtNanos;
+        mLastX = x;
+        mLastY = y;
+        mLastTimestamp = timestamp;
+
+        if (mState == STATE_IDLE) {
+            // Snap back as soon as motion resumes
+            if (speed > mActiveThreshold) {
+                mState = STATE_ACTIVE;
+                mStillSince = timestamp;
+                return true;
+            }
+        } else {
+            if (speed >= mIdleThreshold) {
+                mStillSince = timestamp;
+            } else if (timestamp - mStillSince >= mIdleDelayNanos) {
+                mState = STATE_IDLE;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the sampler to the active state and discards its motion history. May be called
+     * from any thread. The state reads as active right away, and the history is discarded by
+     * the interpreting thread on the next {@link #onTilt}.
+     */
+    void reset() {
+        mResetRequested = true;
+        mState = STATE_ACTIVE;
+    }
+
+    /**
+     * Determines the current sampling state, for diagnostics.
+     *
+     * @return {@link #STATE_ACTIVE} or {@link #STATE_IDLE}
+     */
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Sets the tilt speeds used to switch between states. Motion below the idle threshold for
+     * the idle delay switches to the idle state, and motion above the active threshold
+     * switches back immediately.
+     *
+     * @param idleThreshold   the tilt speed in units of tilt per second to become idle below
+     * @param activeThreshold the tilt speed in units of tilt per second to become active above
+     */
+    public void setThresholds(float idleThreshold, float activeThreshold) {
+        if (idleThreshold <= 0 || activeThreshold < idleThreshold) {
+            throw new IllegalArgumentException("Thresholds must be positive and the active threshold must not be below the idle threshold");
+        }
+
+        mIdleThreshold = idleThreshold;
+        mActiveThreshold = activeThreshold;
+    }
+
+    /**
+     * Sets how long motion must stay below the idle threshold before the sampling period is
+     * lowered.
+     *
+     * @param idleDelayMs the idle delay in milliseconds
+     */
+    public void setIdleDelay(long idleDelayMs) {
+        if (idleDelayMs < 0) {
+            throw new IllegalArgumentException("Idle delay must not be negative");
+        }
+
+        mIdleDelayNanos = idleDelayMs * 1000000L;
+    }
+
+    /**
+     * Determines the sampling period used while idle.
+     *
+     * @return the idle sampling period rate
+     */
+    public int getIdleSamplingPeriodUs() {
+        return mIdleSamplingPeriodUs;
+    }
+
+    /**
+     * Sets the sampling period used while idle.
+     *
+     * @param idleSamplingPeriodUs the idle sensor sampling period rate
+     */
+    public void setIdleSamplingPeriodUs(int idleSamplingPeriodUs) {
+        mIdleSamplingPeriodUs = idleSamplingPeriodUs;
+    }
+
+}
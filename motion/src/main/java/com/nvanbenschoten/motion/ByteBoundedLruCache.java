@@ -0,0 +1,128 @@
+package com.nvanbenschoten.motion;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+abstract class ByteBoundedLruCache<K, V> {
+
+    private final LinkedHashMap<K, V> mEntries;
+    private final long mMaxBytes;
+    private long mBytes;
+
+    /**
+     * Creates a cache that evicts its least recently used entries once their total size
+     * exceeds the given number of bytes.
+     *
+     * @param maxBytes the maximum total size of the cached entries
+     */
+    ByteBoundedLruCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+
+        mMaxBytes = maxBytes;
+        mEntries = new LinkedHashMap<K, V>(16, 0.75f, true);
+    }
+
+    /**
+     * Determines the size of an entry in bytes. Must not change while the entry is cached.
+     *
+     * @param value the cached value
+     * @return the size of the value in bytes
+     */
+    protected abstract long sizeOf(V value);
+
+    /**
+     * Retrieves a cached value, marking it as the most recently used.
+     *
+     * @param key the key of the value
+     * @return the cached value, or null if none is cached
+     */
+    synchronized V get(K key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * Caches a value, replacing any value cached under the same key, then evicts least
+     * recently used entries until the cache fits its size. A value larger than the whole
+     * cache is not cached.
+     *
+     * @param key   the key of the value
+     * @param value the value to cache
+     */
+    synchronized void put(K key, V value) {
+        final long size = sizeOf(value);
+        if (size > mMaxBytes) {
+            remove(key);
+            return;
+        }
+
+        final V previous = mEntries.put(key, value);
+        if (previous != null) {
+            mBytes -= sizeOf(previous);
+        }
+        mBytes += size;
+
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * Removes a cached value.
+     *
+     * @param key the key of the value
+     */
+    synchronized void remove(K key) {
+        final V previous = mEntries.remove(key);
+        if (previous != null) {
+            mBytes -= sizeOf(previous);
+        }
+    }
+
+    /**
+     * Evicts least recently used entries until the total size is at most the given size.
+     *
+     * @param maxBytes the size to trim to, 0 to empty the cache
+     */
+    synchronized void trimToSize(long maxBytes) {
+        final Iterator<Map.Entry<K, V>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            mBytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Determines the total size of the cached entries.
+     *
+     * @return the total size in bytes
+     */
+    synchronized long size() {
+        return mBytes;
+    }
+
+    /**
+     * Determines the maximum total size of the cached entries.
+     *
+     * @return the maximum size in bytes
+     */
+    long maxSize() {
+        return mMaxBytes;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.nvanbenschoten.motion;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.view.Display;
+import android.view.WindowManager;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class DisplayRotationTracker {
+
+    private final Context mContext;
+    private final Display mDisplay;
+
+    /**
+     * The cached rotation of the default display. Written on the main thread and read from
+     * whichever thread interprets sensor events.
+     */
+    private volatile int mRotation;
+
+    /**
+     * Listens for display changes on API 17 and above, which unlike configuration changes
+     * also report direct 180 degree rotations.
+     */
+    private DisplayManager.DisplayListener mDisplayListener;
+
+    DisplayRotationTracker(Context context) {
+        mContext = context;
+        mDisplay = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay();
+        refresh();
+    }
+
+    /**
+     * Determines the cached rotation of the default display.
+     *
+     * @return the screen rotation, one of the {@link android.view.Surface} rotation constants
+     */
+    int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * Queries the default display for its current rotation and caches it. Should be called
+     * whenever the configuration changes.
+     */
+    void refresh() {
+        mRotation = mDisplay.getRotation();
+    }
+
+    /**
+     * Refreshes the cached rotation and begins listening for display changes. Must be called
+     * on a thread with a Looper, usually the main thread.
+     */
+    void start() {
+        refresh();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && mDisplayListener == null) {
+            registerDisplayListener();
+        }
+    }
+
+    /**
+     * Stops listening for display changes.
+     */
+    void stop() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && mDisplayListener != null) {
+            unregisterDisplayListener();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private void registerDisplayListener() {
+        final int displayId = mDisplay.getDisplayId();
+        mDisplayListener = new DisplayManager.DisplayListener() {
+            @Override
+            public void onDisplayAdded(int id) { }
+
+            @Override
+            public void onDisplayRemoved(int id) { }
+
+            @Override
+            public void onDisplayChanged(int id) {
+                if (id == displayId) {
+                    refresh();
+                }
+            }
+        };
+
+        ((DisplayManager) mContext.getSystemService(Context.DISPLAY_SERVICE))
+                .registerDisplayListener(mDisplayListener, null);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private void unregisterDisplayListener() {
+        ((DisplayManager) mContext.getSystemService(Context.DISPLAY_SERVICE))
+                .unregisterDisplayListener(mDisplayListener);
+        mDisplayListener = null;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.nvanbenschoten.motion;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class FramePacer implements Choreographer.FrameCallback {
+
+    /**
+     * Receives the latest published translation once per frame.
+     */
+    interface Callback {
+
+        /**
+         * Called on the Choreographer's thread with the newest translation published since
+         * the previous frame.
+         *
+         * @param x               the horizontal translation
+         * @param y               the vertical translation
+         * @param timestamp       the sensor timestamp of the translation in nanoseconds
+         * @param coalescedEvents the number of translations published since the previous frame
+         */
+        void onFrame(float x, float y, long timestamp, int coalescedEvents);
+    }
+
+    private final Choreographer mChoreographer;
+    private final Callback mCallback;
+
+    /**
+     * The latest translation slot, guarded by mLock as it may be written from any thread.
+     */
+    private final Object mLock = new Object();
+    private float mX;
+    private float mY;
+    private long mTimestamp;
+    private int mCoalescedEvents;
+    private boolean mFrameScheduled;
+
+    /**
+     * Creates a FramePacer bound to the Choreographer of the calling thread, which must
+     * have a Looper. Callbacks will be invoked on that thread.
+     *
+     * @param callback the callback to deliver translations to
+     */
+    FramePacer(Callback callback) {
+        mChoreographer = Choreographer.getInstance();
+        mCallback = callback;
+    }
+
+    /**
+     * Stores the translation in the latest value slot and schedules a frame callback if one
+     * is not already pending. Safe to call from any thread.
+     *
+     * @param x         the horizontal translation
+     * @param y         the vertical translation
+     * @param timestamp the sensor timestamp of the translation in nanoseconds
+     */
+    void publish(float x, float y, long timestamp) {
+        synchronized (mLock) {
+            mX = x;
+            mY = y;
+            mTimestamp = timestamp;
+            mCoalescedEvents++;
+
+            if (mFrameScheduled) return;
+            mFrameScheduled = true;
+        }
+
+        mChoreographer.postFrameCallback(this);
+    }
+
+    /**
+     * Removes any pending frame callback and discards the unapplied translation.
+     */
+    void cancel() {
+        mChoreographer.removeFrameCallback(this);
+
+        synchronized (mLock) {
+            mCoalescedEvents = 0;
+            mFrameScheduled = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        float x, y;
+        long timestamp;
+        int coalescedEvents;
+
+        // No new frame is scheduled here, the next publish will schedule one
+        synchronized (mLock) {
+            x = mX;
+            y = mY;
+            timestamp = mTimestamp;
+            coalescedEvents = mCoalescedEvents;
+            mCoalescedEvents = 0;
+            mFrameScheduled = false;
+        }
+
+        if (coalescedEvents > 0) {
+            mCallback.onFrame(x, y, timestamp, coalescedEvents);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class GravityMotionSource extends MotionSource {
+
+    /**
+     * The cutoff frequency in Hz of the low-pass filter separating gravity from the raw
+     * accelerometer's readings.
+     */
+    private static final float ACCELEROMETER_CUTOFF_FREQUENCY = 2f;
+
+    /**
+     * Below this, the gravity vector points straight down through the screen and the
+     * shortest rotation to it is ambiguous.
+     */
+    private static final float EPSILON = 1e-6f;
+
+    private final int mSensorType;
+    private final TiltFilter mGravityFilter;
+
+    private final float[] mGravity = new float[3];
+    private final float[] mRotationVector = new float[4];
+
+    /**
+     * Whether {@link #reset()} was called since the converting thread last checked, so the
+     * gravity filter can be reset from any thread without racing with the conversion.
+     */
+    private volatile boolean mResetRequested = false;
+
+    /**
+     * Creates a source deriving a rotation vector from gravity.
+     *
+     * @param sensorType the sensor type, either TYPE_GRAVITY or TYPE_ACCELEROMETER. The
+     *                   accelerometer's readings are low-pass filtered first
+     */
+    GravityMotionSource(int sensorType) {
+        mSensorType = sensorType;
+        mGravityFilter = (sensorType == Sensor.TYPE_ACCELEROMETER)
+                ? new LowPassTiltFilter(ACCELEROMETER_CUTOFF_FREQUENCY) : null;
+    }
+
+    @Override
+    public int getSensorType() {
+        return mSensorType;
+    }
+
+    @NonNull
+    @Override
+    public float[] getRotationVector(@NonNull SensorEvent event) {
+        // Normalize first, so the filter sees values within -1 and 1
+        normalize(event.values[0], event.values[1], event.values[2], mGravity);
+        if (mGravityFilter != null) {
+            if (mResetRequested) {
+                mResetRequested = false;
+                mGravityFilter.reset();
+            }
+            mGravityFilter.filter(mGravity, event.timestamp);
+        }
+
+        gravityToRotationVector(mGravity[0], mGravity[1], mGravity[2], mRotationVector);
+        return mRotationVector;
+    }
+
+    @Override
+    public void reset() {
+        mResetRequested = true;
+    }
+
+    /**
+     * Computes the rotation vector of the shortest rotation carrying the measured gravity
+     * direction onto the world's up axis. Device orientations only differing in yaw share a
+     * gravity direction, so the rotation carries no yaw, while its pitch and roll match those
+     * of the rotation vector sensor for the same orientation.
+     *
+     * @param x   the gravity along the device's x axis
+     * @param y   the gravity along the device's y axis
+     * @param z   the gravity along the device's z axis
+     * @param out receives the rotation vector's x, y, z, and scalar components
+     */
+    @VisibleForTesting
+    static void gravityToRotationVector(float x, float y, float z, @NonNull float[] out) {
+        final float norm = (float) Math.sqrt(x * x + y * y + z * z);
+        if (norm < EPSILON) {
+            // Free fall, assume the device is flat
+            out[0] = 0;
+            out[1] = 0;
+            out[2] = 0;
+            out[3] = 1;
+            return;
+        }
+        x /= norm;
+        y /= norm;
+        z /= norm;
+
+        // The half-angle quaternion between gravity and up: axis gravity x up, scalar 1 + gravity . up
+        final float w = 1 + z;
+        if (w < EPSILON) {
+            // Screen facing straight down, flip around the device's x axis
+            out[0] = 1;
+            out[1] = 0;
+            out[2] = 0;
+            out[3] = 0;
+            return;
+        }
+
+        final float length = (float) Math.sqrt(y * y + x * x + w * w);
+        out[0] = y / length;
+        out[1] = -x / length;
+        out[2] = 0;
+        out[3] = w / length;
+    }
+
+    /**
+     * Scales a vector to unit length, leaving zero vectors untouched.
+     *
+     * @param x   the x component
+     * @param y   the y component
+     * @param z   the z component
+     * @param out receives the normalized vector
+     */
+    private static void normalize(float x, float y, float z, float[] out) {
+        final float norm = (float) Math.sqrt(x * x + y * y + z * z);
+        final float scale = (norm > 0) ? 1 / norm : 0;
+        out[0] = x * scale;
+        out[1] = y * scale;
+        out[2] = z * scale;
+    }
+
+}
@@ -0,0 +1,410 @@
+package com.nvanbenschoten.motion;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.support.annotation.NonNull;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.Arrays;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class LayeredParallaxView extends View implements SensorEventListener {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private SensorInterpreter mSensorInterpreter;
+    private DisplayRotationTracker mDisplayRotationTracker;
+    private SensorManager mSensorManager;
+
+    // Configures layer scales and offsets, one layer at a time.
+    private ParallaxTransform mTransform;
+
+    /**
+     * The maximum change in tilt, as a fraction of the travel, applied per sensor event.
+     * Set to a negative number to disable.
+     */
+    private float mMaximumJump = .1f;
+
+    // Current tilt, shared by all layers.
+    private float mXTilt;
+    private float mYTilt;
+
+    // Layers from back to front, with their per layer values in parallel primitive arrays.
+    private Drawable[] mLayers = new Drawable[INITIAL_CAPACITY];
+    private float[] mDepths = new float[INITIAL_CAPACITY];
+    private float[] mScales = new float[INITIAL_CAPACITY];
+    private float[] mXOffsets = new float[INITIAL_CAPACITY];
+    private float[] mYOffsets = new float[INITIAL_CAPACITY];
+    private float[] mXTravels = new float[INITIAL_CAPACITY];
+    private float[] mYTravels = new float[INITIAL_CAPACITY];
+    private float[] mDx = new float[INITIAL_CAPACITY];
+    private float[] mDy = new float[INITIAL_CAPACITY];
+    private int mLayerCount;
+
+    /**
+     * The index of the frontmost opaque layer, which hides every layer behind it, or 0.
+     */
+    private int mFirstVisibleLayer;
+
+    public LayeredParallaxView(Context context) {
+        this(context, null);
+    }
+
+    public LayeredParallaxView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public LayeredParallaxView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        // Instantiate future objects
+        mTransform = new ParallaxTransform();
+        mTransform.setMaximumJump(-1);
+        mSensorInterpreter = new SensorInterpreter();
+        mDisplayRotationTracker = new DisplayRotationTracker(context);
+
+        // Set available attributes, shared with ParallaxImageView
+        if (attrs != null) {
+            final TypedArray customAttrs = context.obtainStyledAttributes(attrs, R.styleable.ParallaxImageView);
+
+            if (customAttrs != null) {
+                if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionIntensity)) {
+                    setParallaxIntensity(customAttrs.getFloat(R.styleable.ParallaxImageView_motionIntensity,
+                            mTransform.getParallaxIntensity()));
+                }
+
+                if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionScaledIntensity)) {
+                    setScaledIntensities(customAttrs.getBoolean(R.styleable.ParallaxImageView_motionScaledIntensity,
+                            mTransform.isScaledIntensities()));
+                }
+
+                if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionTiltSensitivity)) {
+                    setTiltSensitivity(customAttrs.getFloat(R.styleable.ParallaxImageView_motionTiltSensitivity,
+                            mSensorInterpreter.getTiltSensitivity()));
+                }
+
+                customAttrs.recycle();
+            }
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        configureLayers();
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        mDisplayRotationTracker.refresh();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        // Layers behind the frontmost opaque layer are never visible, so they are not drawn
+        for (int i = mFirstVisibleLayer; i < mLayerCount; i++) {
+            final int saveCount = canvas.save();
+            canvas.translate(mDx[i], mDy[i]);
+            canvas.scale(mScales[i], mScales[i]);
+            mLayers[i].draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        for (int i = 0; i < mLayerCount; i++) {
+            if (mLayers[i] == who) return true;
+        }
+        return super.verifyDrawable(who);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (mSensorInterpreter == null) return;
+        final float[] vectors = mSensorInterpreter.interpretSensorEvent(
+                mDisplayRotationTracker.getRotation(), event,
+                SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+
+        // Return if interpretation of data failed
+        if (vectors == null) return;
+
+        setTilt(vectors[2], -vectors[1]);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) { }
+
+    /**
+     * Registers a sensor manager with the layered parallax view. Should be called in onResume
+     * or onStart lifecycle callbacks from an Activity or Fragment.
+     */
+    public void registerSensorManager() {
+        registerSensorManager(SensorManager.SENSOR_DELAY_FASTEST);
+    }
+
+    /**
+     * Registers a sensor manager with the layered parallax view. A single rotation vector
+     * listener drives every layer.
+     *
+     * @param samplingPeriodUs the sensor sampling period rate
+     */
+    public void registerSensorManager(int samplingPeriodUs) {
+        if (getContext() == null || mSensorManager != null) return;
+
+        // Acquires a sensor manager
+        mSensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
+
+        if (mSensorManager != null) {
+            mSensorInterpreter.reset();
+            mDisplayRotationTracker.start();
+            mSensorManager.registerListener(this,
+                    mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
+                    samplingPeriodUs);
+        }
+    }
+
+    /**
+     * Unregisters the layered parallax view's SensorManager. Should be called in onPause or
+     * onStop lifecycle callbacks from an Activity or Fragment to avoid leaking sensor usage.
+     */
+    public void unregisterSensorManager() {
+        unregisterSensorManager(false);
+    }
+
+    /**
+     * Unregisters the layered parallax view's SensorManager.
+     *
+     * @param resetTranslation if the layers should be reset to their centered positions
+     */
+    public void unregisterSensorManager(boolean resetTranslation) {
+        if (mSensorManager == null || mSensorInterpreter == null) return;
+
+        mSensorManager.unregisterListener(this);
+        mSensorManager = null;
+        mDisplayRotationTracker.stop();
+        mSensorInterpreter.reset();
+
+        if (resetTranslation) {
+            mXTilt = 0;
+            mYTilt = 0;
+            translateLayers();
+        }
+    }
+
+    /**
+     * Adds a layer in front of the existing layers. Each layer is scaled to cover the view
+     * and moves with tilt in proportion to its depth: a depth of 0 keeps the layer still,
+     * while a depth of 1 moves it as far as a {@link ParallaxImageView} with the same parallax
+     * intensity would. Far away layers such as the sky should have small depths and near
+     * layers large ones.
+     *
+     * @param layer the drawable to draw, using its intrinsic size if it has one
+     * @param depth the depth factor of the layer, 0 or greater
+     */
+    public void addLayer(@NonNull Drawable layer, float depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Layer depth must not be negative");
+        }
+
+        if (mLayerCount == mLayers.length) {
+            growLayers(mLayerCount * 2);
+        }
+
+        layer.setCallback(this);
+        mLayers[mLayerCount] = layer;
+        mDepths[mLayerCount] = depth;
+        mLayerCount++;
+
+        configureLayers();
+    }
+
+    /**
+     * Removes every layer.
+     */
+    public void removeAllLayers() {
+        for (int i = 0; i < mLayerCount; i++) {
+            mLayers[i].setCallback(null);
+            mLayers[i] = null;
+        }
+        mLayerCount = 0;
+        mFirstVisibleLayer = 0;
+        invalidate();
+    }
+
+    /**
+     * Determines the number of layers.
+     *
+     * @return the layer count
+     */
+    public int getLayerCount() {
+        return mLayerCount;
+    }
+
+    /**
+     * Sets the intensity of the parallax effect for a layer with a depth of 1. Layers with
+     * other depths scale their intensity in proportion.
+     *
+     * @param parallaxIntensity the new intensity
+     */
+    public void setParallaxIntensity(float parallaxIntensity) {
+        mTransform.setParallaxIntensity(parallaxIntensity);
+        configureLayers();
+    }
+
+    /**
+     * Sets the parallax tilt sensitivity for the view. The stronger the sensitivity,
+     * the more a given tilt will move the layers and the smaller needed tilt to reach the
+     * layer bounds.
+     *
+     * @param sensitivity the new tilt sensitivity
+     */
+    public void setTiltSensitivity(float sensitivity) {
+        mSensorInterpreter.setTiltSensitivity(sensitivity);
+    }
+
+    /**
+     * Sets whether translation should be limited to each layer's bounds or should be forced
+     * to be the same for both the x and y axis.
+     *
+     * @param scaledIntensities the scaledIntensities flag
+     */
+    public void setScaledIntensities(boolean scaledIntensities) {
+        mTransform.setScaledIntensities(scaledIntensities);
+        configureLayers();
+    }
+
+    /**
+     * Sets the maximum change in tilt, as a fraction of each layer's travel, that a single
+     * sensor input may cause. Set to a negative number to disable.
+     *
+     * @param maximumJump the maximum jump
+     */
+    public void setMaximumJump(float maximumJump) {
+        mMaximumJump = maximumJump;
+    }
+
+    /**
+     * Sets whether tilt should be computed directly from the rotation vector's quaternion.
+     *
+     * @param quaternionEngineEnabled the quaternionEngineEnabled flag
+     */
+    public void setQuaternionEngineEnabled(boolean quaternionEngineEnabled) {
+        mSensorInterpreter.setQuaternionEngineEnabled(quaternionEngineEnabled);
+    }
+
+    /**
+     * Applies a tilt to every layer, limited by the maximum jump. Since all layers travel in
+     * proportion to the same tilt, limiting the tilt once limits every layer.
+     *
+     * @param x the horizontal tilt, between -1 and 1
+     * @param y the vertical tilt, between -1 and 1
+     */
+    private void setTilt(float x, float y) {
+        if (mMaximumJump > 0) {
+            x = Math.max(mXTilt - mMaximumJump, Math.min(mXTilt + mMaximumJump, x));
+            y = Math.max(mYTilt - mMaximumJump, Math.min(mYTilt + mMaximumJump, y));
+        }
+
+        mXTilt = x;
+        mYTilt = y;
+        translateLayers();
+    }
+
+    /**
+     * Derives every layer's position from the current tilt in a single pass, then redraws.
+     */
+    private void translateLayers() {
+        final float x = mXTilt;
+        final float y = mYTilt;
+        for (int i = 0; i < mLayerCount; i++) {
+            mDx[i] = mXOffsets[i] + x * mXTravels[i];
+            mDy[i] = mYOffsets[i] + y * mYTravels[i];
+        }
+        invalidate();
+    }
+
+    /**
+     * Computes each layer's scale, centering offsets and travel the way
+     * {@link ParallaxImageView} configures its matrix, with the parallax intensity reduced in
+     * proportion to the layer's depth. Also finds the frontmost opaque layer. Only needs to be
+     * called when the layers, the view size or the parallax intensity change.
+     */
+    private void configureLayers() {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width == 0 || height == 0) return;
+
+        final float parallaxIntensity = mTransform.getParallaxIntensity();
+        mFirstVisibleLayer = 0;
+
+        for (int i = 0; i < mLayerCount; i++) {
+            final Drawable layer = mLayers[i];
+            final int layerWidth = (layer.getIntrinsicWidth() > 0) ? layer.getIntrinsicWidth() : width;
+            final int layerHeight = (layer.getIntrinsicHeight() > 0) ? layer.getIntrinsicHeight() : height;
+            layer.setBounds(0, 0, layerWidth, layerHeight);
+
+            mTransform.setParallaxIntensity(1 + (parallaxIntensity - 1) * mDepths[i]);
+            mTransform.configure(layerWidth, layerHeight, width, height);
+            mTransform.setTranslate(1, 1);
+
+            mScales[i] = mTransform.getScale();
+            mXOffsets[i] = mTransform.getXOffset();
+            mYOffsets[i] = mTransform.getYOffset();
+            mXTravels[i] = mTransform.getXTranslation();
+            mYTravels[i] = mTransform.getYTranslation();
+
+            // Every layer covers the whole view, so an opaque layer hides all layers behind it
+            if (layer.getOpacity() == PixelFormat.OPAQUE) {
+                mFirstVisibleLayer = i;
+            }
+        }
+
+        mTransform.setParallaxIntensity(parallaxIntensity);
+        translateLayers();
+    }
+
+    /**
+     * Grows the layer arrays to the given capacity.
+     *
+     * @param capacity the new capacity
+     */
+    private void growLayers(int capacity) {
+        mLayers = Arrays.copyOf(mLayers, capacity);
+        mDepths = Arrays.copyOf(mDepths, capacity);
+        mScales = Arrays.copyOf(mScales, capacity);
+        mXOffsets = Arrays.copyOf(mXOffsets, capacity);
+        mYOffsets = Arrays.copyOf(mYOffsets, capacity);
+        mXTravels = Arrays.copyOf(mXTravels, capacity);
+        mYTravels = Arrays.copyOf(mYTravels, capacity);
+        mDx = Arrays.copyOf(mDx, capacity);
+        mDy = Arrays.copyOf(mDy, capacity);
+    }
+
+}
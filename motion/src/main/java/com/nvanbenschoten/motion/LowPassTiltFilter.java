@@ -0,0 +1,89 @@
+package com.nvanbenschoten.motion;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class LowPassTiltFilter implements TiltFilter {
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    /**
+     * The time constant of the filter in seconds, derived from its cutoff frequency.
+     */
+    private final float mTimeConstant;
+
+    // Filter state, sized on first use.
+    private float[] mFiltered;
+    private long mLastTimestamp;
+    private boolean mInitialized = false;
+
+    /**
+     * Creates an exponential low-pass filter with a cutoff frequency of 4 Hz.
+     */
+    public LowPassTiltFilter() {
+        this(4f);
+    }
+
+    /**
+     * Creates an exponential low-pass filter. The lower the cutoff frequency, the smoother and
+     * the more delayed the filtered tilt.
+     *
+     * @param cutoffFrequency the cutoff frequency in Hz
+     */
+    public LowPassTiltFilter(float cutoffFrequency) {
+        if (cutoffFrequency <= 0) {
+            throw new IllegalArgumentException("Cutoff frequency must be positive");
+        }
+
+        mTimeConstant = (float) (1 / (2 * Math.PI * cutoffFrequency));
+    }
+
+    @Override
+    public void filter(float[] tilt, long timestamp) {
+        if (mFiltered == null) {
+            mFiltered = new float[tilt.length];
+        }
+
+        if (!mInitialized) {
+            System.arraycopy(tilt, 0, mFiltered, 0, tilt.length);
+            mLastTimestamp = timestamp;
+            mInitialized = true;
+            return;
+        }
+
+        // Derive the smoothing factor from the actual sample interval. Duplicate or out of
+        // order events carry no timing information, so they leave the filter and its clock
+        // unchanged
+        final float dt = (timestamp - mLastTimestamp) / NANOS_PER_SECOND;
+        final float alpha;
+        if (dt > 0) {
+            alpha = dt / (mTimeConstant + dt);
+            mLastTimestamp = timestamp;
+        } else {
+            alpha = 0f;
+        }
+
+        for (int i = 0; i < tilt.length; i++) {
+            mFiltered[i] += alpha * (tilt[i] - mFiltered[i]);
+            tilt[i] = mFiltered[i];
+        }
+    }
+
+    @Override
+    public void reset() {
+        mInitialized = false;
+    }
+
+}
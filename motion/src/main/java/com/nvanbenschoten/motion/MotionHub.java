@@ -0,0 +1,238 @@
+package com.nvanbenschoten.motion;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class MotionHub implements SensorEventListener {
+
+    private static final String TAG = MotionHub.class.getName();
+
+    /**
+     * Interface definition for a callback to be invoked when the shared tilt changes.
+     */
+    public interface OnTiltChangedListener {
+
+        /**
+         * Called on the main thread each time a sensor event has been interpreted.
+         *
+         * @param tilt      the yaw, pitch, and roll deltas from the shared target, in the range
+         *                  -1 to 1 with a tilt sensitivity of 1. The array is reused for the
+         *                  next event and must not be modified or retained.
+         * @param timestamp the sensor event's timestamp in nanoseconds
+         */
+        void onTiltChanged(float[] tilt, long timestamp);
+    }
+
+    private static MotionHub sInstance;
+
+    private final SensorManager mSensorManager;
+    private final SensorInterpreter mSensorInterpreter;
+    private final DisplayRotationTracker mDisplayRotationTracker;
+
+    /**
+     * The registered listeners, and a copy used for dispatching so that listeners may
+     * unregister themselves during a callback without allocating per event.
+     */
+    private final ArrayList<OnTiltChangedListener> mListeners = new ArrayList<OnTiltChangedListener>();
+    private OnTiltChangedListener[] mDispatchListeners = new OnTiltChangedListener[0];
+
+    /**
+     * The sampling period each registered listener requested, parallel to mListeners.
+     */
+    private final ArrayList<Integer> mListenerPeriods = new ArrayList<Integer>();
+
+    /**
+     * The sampling period the sensor is currently registered at, or -1 if not registered.
+     */
+    private int mSamplingPeriodUs = -1;
+
+    /**
+     * Retrieves the process-wide MotionHub. Must be called on the main thread.
+     *
+     * @param context any context, only its application context is retained
+     * @return the shared MotionHub
+     */
+    public static MotionHub getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new MotionHub(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private MotionHub(Context context) {
+        this((SensorManager) context.getSystemService(Context.SENSOR_SERVICE),
+                new DisplayRotationTracker(context));
+    }
+
+    @VisibleForTesting
+    MotionHub(SensorManager sensorManager, DisplayRotationTracker displayRotationTracker) {
+        mSensorManager = sensorManager;
+        mDisplayRotationTracker = displayRotationTracker;
+
+        // Views apply their own tilt sensitivity on top of the shared interpretation
+        mSensorInterpreter = new SensorInterpreter();
+        mSensorInterpreter.setTiltSensitivity(1);
+    }
+
+    /**
+     * Registers a listener with the hub at the fastest sampling rate. Should be called in
+     * onResume or onStart lifecycle callbacks from an Activity or Fragment.
+     *
+     * @param listener the listener to register
+     */
+    public void registerListener(@NonNull OnTiltChangedListener listener) {
+        registerListener(listener, SensorManager.SENSOR_DELAY_FASTEST);
+    }
+
+    /**
+     * Registers a listener with the hub. The rotation vector sensor is registered when the
+     * first listener is added, and re-registered whenever the fastest sampling period requested
+     * by any listener changes. SENSOR_DELAY_ constants and periods in microseconds are
+     * compared by the rate they sample at. Registering a listener again only updates its
+     * sampling period. Must be called on the main thread.
+     *
+     * @param listener         the listener to register
+     * @param samplingPeriodUs the sensor sampling period rate
+     */
+    public void registerListener(@NonNull OnTiltChangedListener listener, int samplingPeriodUs) {
+        final int index = mListeners.indexOf(listener);
+        if (index >= 0) {
+            mListenerPeriods.set(index, samplingPeriodUs);
+        } else {
+            mListeners.add(listener);
+            mListenerPeriods.add(samplingPeriodUs);
+            mDispatchListeners = mListeners.toArray(new OnTiltChangedListener[mListeners.size()]);
+        }
+
+        if (mSensorManager == null) return;
+
+        if (mSamplingPeriodUs < 0) {
+            // First listener, start from a fresh target
+            mSensorInterpreter.reset();
+            mDisplayRotationTracker.start();
+            registerSensor(samplingPeriodUs);
+        } else {
+            updateSamplingPeriod();
+        }
+    }
+
+    /**
+     * Unregisters a listener from the hub. The rotation vector sensor is released when the last
+     * listener is removed, and otherwise re-registered at the fastest sampling period still
+     * requested if that changed. Must be called on the main thread.
+     *
+     * @param listener the listener to unregister
+     */
+    public void unregisterListener(@NonNull OnTiltChangedListener listener) {
+        final int index = mListeners.indexOf(listener);
+        if (index < 0) return;
+
+        mListeners.remove(index);
+        mListenerPeriods.remove(index);
+        mDispatchListeners = mListeners.toArray(new OnTiltChangedListener[mListeners.size()]);
+
+        if (mSamplingPeriodUs < 0) return;
+
+        if (mListeners.isEmpty()) {
+            mSensorManager.unregisterListener(this);
+            mDisplayRotationTracker.stop();
+            mSamplingPeriodUs = -1;
+            return;
+        }
+
+        updateSamplingPeriod();
+    }
+
+    /**
+     * Determines how many listeners are currently registered with the hub.
+     *
+     * @return the number of registered listeners
+     */
+    public int getListenerCount() {
+        return mListeners.size();
+    }
+
+    /**
+     * Retrieves the hub's published tilt state, interpreted with a tilt sensitivity of 1,
+     * which any thread may snapshot without locking or allocating.
+     *
+     * @return the tilt state
+     */
+    @NonNull
+    public TiltState getTiltState() {
+        return mSensorInterpreter.getTiltState();
+    }
+
+    /**
+     * Refreshes the cached screen rotation. Should be called when the configuration changes.
+     */
+    void refreshDisplayRotation() {
+        mDisplayRotationTracker.refresh();
+    }
+
+    /**
+     * Re-registers the sensor at the fastest sampling period requested by any listener, if it
+     * samples at a different rate than the current registration.
+     */
+    private void updateSamplingPeriod() {
+        int fastestPeriodUs = mListenerPeriods.get(0);
+        for (int i = 1; i < mListenerPeriods.size(); i++) {
+            if (SamplingPeriods.isFaster(mListenerPeriods.get(i), fastestPeriodUs)) {
+                fastestPeriodUs = mListenerPeriods.get(i);
+            }
+        }
+
+        if (SamplingPeriods.isFaster(fastestPeriodUs, mSamplingPeriodUs)
+                || SamplingPeriods.isFaster(mSamplingPeriodUs, fastestPeriodUs)) {
+            mSensorManager.unregisterListener(this);
+            registerSensor(fastestPeriodUs);
+        }
+    }
+
+    private void registerSensor(int samplingPeriodUs) {
+        mSamplingPeriodUs = samplingPeriodUs;
+        mSensorManager.registerListener(this,
+                mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
+                samplingPeriodUs);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        final float[] vectors = mSensorInterpreter.interpretSensorEvent(
+                mDisplayRotationTracker.getRotation(), event);
+
+        // Return if interpretation of data failed
+        if (vectors == null) return;
+
+        final OnTiltChangedListener[] listeners = mDispatchListeners;
+        for (OnTiltChangedListener listener : listeners) {
+            listener.onTiltChanged(vectors, event.timestamp);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) { }
+
+}
@@ -0,0 +1,173 @@
+package com.nvanbenschoten.motion;
+
+import android.annotation.TargetApi;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public abstract class MotionSource {
+
+    /**
+     * A power budget that admits every sensor, so the most accurate available source is used.
+     */
+    public static final float POWER_BUDGET_UNLIMITED = Float.MAX_VALUE;
+
+    /**
+     * Determines the type of the sensor whose events the source converts, one of the
+     * {@link Sensor} TYPE_ constants.
+     *
+     * @return the sensor type
+     */
+    public abstract int getSensorType();
+
+    /**
+     * Converts a sensor event of the source's type into a rotation vector, which is
+     * interpreted into the same tilt as events of a rotation vector sensor. Must not allocate
+     * after the first call.
+     *
+     * @param event the sensor event to convert
+     * @return a rotation vector of at least three values, which may be reused by the next call
+     */
+    @NonNull
+    public abstract float[] getRotationVector(@NonNull SensorEvent event);
+
+    /**
+     * Discards any history kept between events, such as filter state. May be called from any
+     * thread while another thread converts events, so implementations keeping history should
+     * discard it on the converting thread before the next {@link #getRotationVector}.
+     */
+    public void reset() { }
+
+    /**
+     * Creates a source reading the fused {@link Sensor#TYPE_ROTATION_VECTOR}, which tracks all
+     * three axes from the gyroscope, accelerometer, and magnetometer. The most accurate and
+     * the most power hungry source.
+     *
+     * @return the source
+     */
+    @NonNull
+    public static MotionSource rotationVector() {
+        return new RotationVectorMotionSource(Sensor.TYPE_ROTATION_VECTOR);
+    }
+
+    /**
+     * Creates a source reading {@link Sensor#TYPE_GAME_ROTATION_VECTOR}, which fuses the
+     * gyroscope and accelerometer only, leaving the magnetometer powered down. Its yaw drifts
+     * slowly, which pitch and roll are unaffected by. Requires API 18 or above.
+     *
+     * @return the source
+     */
+    @NonNull
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public static MotionSource gameRotationVector() {
+        return new RotationVectorMotionSource(Sensor.TYPE_GAME_ROTATION_VECTOR);
+    }
+
+    /**
+     * Creates a source deriving pitch and roll from {@link Sensor#TYPE_GRAVITY}. Yaw cannot be
+     * observed from gravity and stays near 0, which the parallax effect does not use.
+     *
+     * @return the source
+     */
+    @NonNull
+    public static MotionSource gravity() {
+        return new GravityMotionSource(Sensor.TYPE_GRAVITY);
+    }
+
+    /**
+     * Creates a source deriving pitch and roll from the raw {@link Sensor#TYPE_ACCELEROMETER},
+     * low-pass filtered to separate gravity from the device's own acceleration. The cheapest
+     * source, available on almost every device, at the cost of some added lag.
+     *
+     * @return the source
+     */
+    @NonNull
+    public static MotionSource accelerometer() {
+        return new GravityMotionSource(Sensor.TYPE_ACCELEROMETER);
+    }
+
+    /**
+     * Selects the most accurate source whose sensor is available and draws no more current
+     * than the power budget, in the order rotation vector, game rotation vector, gravity, and
+     * accelerometer. If no available sensor fits the budget, the one drawing the least current
+     * is used instead.
+     *
+     * @param sensorManager  the sensor manager to query sensors from
+     * @param powerBudgetMa  the maximum current in mA, as reported by {@link Sensor#getPower()},
+     *                       or {@link #POWER_BUDGET_UNLIMITED}
+     * @return the selected source, a rotation vector source if no sensor is available at all
+     */
+    @NonNull
+    public static MotionSource select(@NonNull SensorManager sensorManager, float powerBudgetMa) {
+        final int[] types;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            types = new int[]{Sensor.TYPE_ROTATION_VECTOR, Sensor.TYPE_GAME_ROTATION_VECTOR,
+                    Sensor.TYPE_GRAVITY, Sensor.TYPE_ACCELEROMETER};
+        } else {
+            types = new int[]{Sensor.TYPE_ROTATION_VECTOR, Sensor.TYPE_GRAVITY,
+                    Sensor.TYPE_ACCELEROMETER};
+        }
+
+        // A negative power marks a sensor the device does not have
+        final float[] powers = new float[types.length];
+        for (int i = 0; i < types.length; i++) {
+            final Sensor sensor = sensorManager.getDefaultSensor(types[i]);
+            powers[i] = (sensor != null) ? sensor.getPower() : -1;
+        }
+
+        final int index = selectIndex(powers, powerBudgetMa);
+        if (index < 0) {
+            return rotationVector();
+        }
+
+        final int type = types[index];
+        if (type == Sensor.TYPE_GRAVITY || type == Sensor.TYPE_ACCELEROMETER) {
+            return new GravityMotionSource(type);
+        }
+        return new RotationVectorMotionSource(type);
+    }
+
+    /**
+     * Picks the first available candidate within the power budget, or else the available
+     * candidate drawing the least current.
+     *
+     * @param powers        the current drawn by each candidate in mA, in order of preference,
+     *                      negative if the candidate is not available
+     * @param powerBudgetMa the maximum current in mA
+     * @return the index of the selected candidate, or -1 if none is available
+     */
+    @VisibleForTesting
+    static int selectIndex(@NonNull float[] powers, float powerBudgetMa) {
+        int cheapest = -1;
+        for (int i = 0; i < powers.length; i++) {
+            if (powers[i] < 0) continue;
+
+            if (powers[i] <= powerBudgetMa) {
+                return i;
+            }
+            if (cheapest < 0 || powers[i] < powers[cheapest]) {
+                cheapest = i;
+            }
+        }
+        return cheapest;
+    }
+
+}
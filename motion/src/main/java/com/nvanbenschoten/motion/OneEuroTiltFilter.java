@@ -0,0 +1,125 @@
+package com.nvanbenschoten.motion;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class OneEuroTiltFilter implements TiltFilter {
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    /**
+     * The cutoff frequency in Hz used while the tilt is not changing.
+     */
+    private final float mMinCutoff;
+
+    /**
+     * How quickly the cutoff frequency rises with the speed of the tilt, in Hz per unit of
+     * tilt per second.
+     */
+    private final float mBeta;
+
+    /**
+     * The cutoff frequency in Hz used to smooth the tilt speed.
+     */
+    private final float mDerivativeCutoff;
+
+    // Filter state, sized on first use.
+    private float[] mFiltered;
+    private float[] mFilteredDerivative;
+    private long mLastTimestamp;
+    private boolean mInitialized = false;
+
+    /**
+     * Creates a One-Euro filter with a minimum cutoff of 1 Hz, a speed coefficient of 0.5 and a
+     * derivative cutoff of 1 Hz.
+     */
+    public OneEuroTiltFilter() {
+        this(1f, 0.5f, 1f);
+    }
+
+    /**
+     * Creates a One-Euro filter, which adapts its cutoff frequency to the speed of the tilt.
+     * Slow movement is smoothed heavily to hide jitter, while fast movement is followed with
+     * little delay.
+     *
+     * @param minCutoff        the cutoff frequency in Hz while the tilt is not changing
+     * @param beta             the increase in cutoff frequency per unit of tilt speed
+     * @param derivativeCutoff the cutoff frequency in Hz used to smooth the tilt speed
+     */
+    public OneEuroTiltFilter(float minCutoff, float beta, float derivativeCutoff) {
+        if (minCutoff <= 0 || derivativeCutoff <= 0) {
+            throw new IllegalArgumentException("Cutoff frequencies must be positive");
+        }
+        if (beta < 0) {
+            throw new IllegalArgumentException("Beta must not be negative");
+        }
+
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+    }
+
+    @Override
+    public void filter(float[] tilt, long timestamp) {
+        if (mFiltered == null) {
+            mFiltered = new float[tilt.length];
+            mFilteredDerivative = new float[tilt.length];
+        }
+
+        if (!mInitialized) {
+            System.arraycopy(tilt, 0, mFiltered, 0, tilt.length);
+            for (int i = 0; i < tilt.length; i++) {
+                mFilteredDerivative[i] = 0;
+            }
+            mLastTimestamp = timestamp;
+            mInitialized = true;
+            return;
+        }
+
+        // Duplicate or out of order events carry no timing information, so the last filtered
+        // value is held and the clock is not rewound
+        final float dt = (timestamp - mLastTimestamp) / NANOS_PER_SECOND;
+        if (dt <= 0) {
+            System.arraycopy(mFiltered, 0, tilt, 0, tilt.length);
+            return;
+        }
+        mLastTimestamp = timestamp;
+
+        final float derivativeAlpha = getAlpha(mDerivativeCutoff, dt);
+
+        for (int i = 0; i < tilt.length; i++) {
+            final float derivative = (tilt[i] - mFiltered[i]) / dt;
+            mFilteredDerivative[i] += derivativeAlpha * (derivative - mFilteredDerivative[i]);
+
+            final float cutoff = mMinCutoff + mBeta * Math.abs(mFilteredDerivative[i]);
+            mFiltered[i] += getAlpha(cutoff, dt) * (tilt[i] - mFiltered[i]);
+            tilt[i] = mFiltered[i];
+        }
+    }
+
+    @Override
+    public void reset() {
+        mInitialized = false;
+    }
+
+    /**
+     * Computes the exponential smoothing factor for a cutoff frequency and sample interval.
+     */
+    private static float getAlpha(float cutoff, float dt) {
+        final float timeConstant = (float) (1 / (2 * Math.PI * cutoff));
+        return 1 / (1 + timeConstant / dt);
+    }
+
+}
@@ -0,0 +1,299 @@
+package com.nvanbenschoten.motion;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+
+import java.util.WeakHashMap;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ParallaxBitmapLoader {
+
+    private static final String TAG = ParallaxBitmapLoader.class.getName();
+
+    private final Resources mResources;
+    private final ByteBoundedLruCache<String, Bitmap> mCache;
+    private final Handler mMainHandler;
+    private HandlerThread mDecodeThread;
+    private Handler mDecodeHandler;
+
+    /**
+     * Intrinsic sizes of decoded resources, so that cached bitmaps can be found without
+     * decoding bounds again. Guarded by itself, as it is filled on the decode thread.
+     */
+    private final SparseArray<int[]> mResourceBounds = new SparseArray<int[]>();
+
+    /**
+     * The latest request for each view, so that only the newest load is applied. Only
+     * accessed on the main thread.
+     */
+    private final WeakHashMap<ParallaxImageView, Integer> mRequests = new WeakHashMap<ParallaxImageView, Integer>();
+    private int mNextRequestId;
+
+    /**
+     * Creates a loader whose cache may hold up to an eighth of the maximum heap size.
+     *
+     * @param context the context to load resources from
+     */
+    public ParallaxBitmapLoader(@NonNull Context context) {
+        this(context, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Creates a loader with a cache of the given size.
+     *
+     * @param context       the context to load resources from
+     * @param maxCacheBytes the maximum total size of cached bitmaps in bytes
+     */
+    public ParallaxBitmapLoader(@NonNull Context context, long maxCacheBytes) {
+        mResources = context.getResources();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mCache = new ByteBoundedLruCache<String, Bitmap>(maxCacheBytes) {
+            @Override
+            protected long sizeOf(Bitmap value) {
+                return (long) value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * Loads a drawable resource into a parallax ImageView. The resource is decoded on a
+     * background thread, downsampled to the view size times its parallax intensity, and
+     * prepared for drawing before being set on the view, so the main thread never waits on
+     * the decode. Bitmaps already in the cache are set immediately. If the view has not been
+     * laid out yet, the screen size is used instead. Must be called on the main thread.
+     *
+     * @param view  the view to set the bitmap on
+     * @param resId the drawable resource to decode
+     */
+    public void loadResource(@NonNull final ParallaxImageView view, final int resId) {
+        final int viewWidth, viewHeight;
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            viewWidth = view.getWidth();
+            viewHeight = view.getHeight();
+        } else {
+            final DisplayMetrics metrics = mResources.getDisplayMetrics();
+            viewWidth = metrics.widthPixels;
+            viewHeight = metrics.heightPixels;
+        }
+        final float parallaxIntensity = view.getParallaxIntensity();
+
+        // Apply a cached bitmap without a round trip through the decode thread
+        final Bitmap cached = getCachedBitmap(resId, viewWidth, viewHeight, parallaxIntensity);
+        if (cached != null) {
+            mRequests.remove(view);
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        final int requestId = ++mNextRequestId;
+        mRequests.put(view, requestId);
+
+        getDecodeHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decodeResource(resId, viewWidth, viewHeight, parallaxIntensity);
+                if (bitmap == null) return;
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Drop results superseded by a newer request or a cancellation
+                        final Integer latest = mRequests.get(view);
+                        if (latest == null || latest != requestId) return;
+
+                        mRequests.remove(view);
+                        view.setImageBitmap(bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the pending load for a view, if any. Must be called on the main thread.
+     *
+     * @param view the view whose load should be cancelled
+     */
+    public void cancel(@NonNull ParallaxImageView view) {
+        mRequests.remove(view);
+    }
+
+    /**
+     * Removes all bitmaps from the cache, for instance in response to low memory.
+     */
+    public void clearCache() {
+        mCache.trimToSize(0);
+    }
+
+    /**
+     * Cancels all pending loads, stops the decode thread and clears the cache. The loader
+     * may still be used afterwards, restarting its thread on demand. Must be called on the
+     * main thread.
+     */
+    public void release() {
+        mRequests.clear();
+
+        if (mDecodeThread != null) {
+            mDecodeThread.quit();
+            mDecodeThread = null;
+            mDecodeHandler = null;
+        }
+
+        clearCache();
+    }
+
+    /**
+     * Determines the largest power of two sample size that still leaves at least one decoded
+     * pixel per screen pixel once the drawable is scaled to cover the view at the given
+     * parallax intensity, the way {@link ParallaxImageView} scales it.
+     *
+     * @param drawableWidth     the width of the source image
+     * @param drawableHeight    the height of the source image
+     * @param viewWidth         the width of the view
+     * @param viewHeight        the height of the view
+     * @param parallaxIntensity the parallax intensity of the view
+     * @return the sample size, at least 1
+     */
+    static int calculateInSampleSize(int drawableWidth, int drawableHeight, int viewWidth,
+                                     int viewHeight, float parallaxIntensity) {
+        if (drawableWidth <= 0 || drawableHeight <= 0 || viewWidth <= 0 || viewHeight <= 0) {
+            return 1;
+        }
+
+        // Scale ParallaxTransform applies to the source image
+        return calculateInSampleSize(parallaxIntensity * Math.max(
+                (float) viewWidth / drawableWidth, (float) viewHeight / drawableHeight));
+    }
+
+    /**
+     * Determines the largest power of two sample size that still leaves at least one decoded
+     * pixel per screen pixel for an image drawn at the given scale.
+     *
+     * @param scale the ratio of screen pixels to image pixels
+     * @return the sample size, at least 1
+     */
+    static int calculateInSampleSize(float scale) {
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Retrieves the cached bitmap for a resource at the sample size a view needs, if its
+     * bounds are known.
+     *
+     * @param resId             the drawable resource
+     * @param viewWidth         the width of the view
+     * @param viewHeight        the height of the view
+     * @param parallaxIntensity the parallax intensity of the view
+     * @return the cached bitmap, or null if it is not cached
+     */
+    private Bitmap getCachedBitmap(int resId, int viewWidth, int viewHeight, float parallaxIntensity) {
+        final int[] bounds;
+        synchronized (mResourceBounds) {
+            bounds = mResourceBounds.get(resId);
+        }
+        if (bounds == null) return null;
+
+        final int sampleSize = calculateInSampleSize(bounds[0], bounds[1], viewWidth, viewHeight,
+                parallaxIntensity);
+        return mCache.get(getCacheKey(resId, sampleSize));
+    }
+
+    /**
+     * Decodes a resource at the sample size a view needs and caches it. Runs on the decode
+     * thread.
+     *
+     * @param resId             the drawable resource
+     * @param viewWidth         the width of the view
+     * @param viewHeight        the height of the view
+     * @param parallaxIntensity the parallax intensity of the view
+     * @return the decoded bitmap, or null if the resource could not be decoded
+     */
+    private Bitmap decodeResource(int resId, int viewWidth, int viewHeight, float parallaxIntensity) {
+        int[] bounds;
+        synchronized (mResourceBounds) {
+            bounds = mResourceBounds.get(resId);
+        }
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        if (bounds == null) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(mResources, resId, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+            bounds = new int[]{options.outWidth, options.outHeight};
+            synchronized (mResourceBounds) {
+                mResourceBounds.put(resId, bounds);
+            }
+            options.inJustDecodeBounds = false;
+        }
+
+        final int sampleSize = calculateInSampleSize(bounds[0], bounds[1], viewWidth, viewHeight,
+                parallaxIntensity);
+        final String key = getCacheKey(resId, sampleSize);
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null) return bitmap;
+
+        options.inSampleSize = sampleSize;
+        bitmap = BitmapFactory.decodeResource(mResources, resId, options);
+        if (bitmap == null) return null;
+
+        // Build the bitmap's texture cache ahead of its first draw
+        bitmap.prepareToDraw();
+
+        mCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Retrieves the handler of the decode thread, starting the thread if needed.
+     *
+     * @return the decode handler
+     */
+    private Handler getDecodeHandler() {
+        if (mDecodeHandler == null) {
+            mDecodeThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            mDecodeThread.start();
+            mDecodeHandler = new Handler(mDecodeThread.getLooper());
+        }
+        return mDecodeHandler;
+    }
+
+    /**
+     * Builds the cache key of a resource decoded at a sample size.
+     *
+     * @param resId      the drawable resource
+     * @param sampleSize the sample size
+     * @return the cache key
+     */
+    private static String getCacheKey(int resId, int sampleSize) {
+        return resId + "/" + sampleSize;
+    }
+
+}
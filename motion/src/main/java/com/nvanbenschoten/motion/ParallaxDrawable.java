@@ -0,0 +1,288 @@
+package com.nvanbenschoten.motion;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.hardware.SensorManager;
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ParallaxDrawable extends Drawable implements Drawable.Callback {
+
+    private final Drawable mDrawable;
+    private final ParallaxTransform mTransform = new ParallaxTransform();
+
+    /**
+     * The sensitivity the parallax effect has towards tilting.
+     */
+    private float mTiltSensitivity = 2.0f;
+
+    private MotionHub mMotionHub;
+
+    private final MotionHub.OnTiltChangedListener mTiltListener = new MotionHub.OnTiltChangedListener() {
+        @Override
+        public void onTiltChanged(float[] tilt, long timestamp) {
+            setTranslate(SensorInterpreter.scaleTilt(tilt[2], mTiltSensitivity),
+                    -SensorInterpreter.scaleTilt(tilt[1], mTiltSensitivity));
+        }
+    };
+
+    /**
+     * Creates a parallax drawable moving the given drawable within its bounds. The drawable
+     * is scaled to cover the bounds, times the parallax intensity, and should not be used
+     * elsewhere while wrapped.
+     *
+     * @param drawable the drawable to move
+     */
+    public ParallaxDrawable(@NonNull Drawable drawable) {
+        mDrawable = drawable;
+        mDrawable.setCallback(this);
+    }
+
+    /**
+     * Starts moving the drawable with the device's tilt at the fastest sampling rate. Should
+     * be called in onResume or onStart lifecycle callbacks from an Activity or Fragment.
+     *
+     * @param context any context
+     */
+    public void registerSensorManager(@NonNull Context context) {
+        registerSensorManager(context, SensorManager.SENSOR_DELAY_FASTEST);
+    }
+
+    /**
+     * Starts moving the drawable with the device's tilt, as interpreted by the shared
+     * {@link MotionHub}. Should be called in onResume or onStart lifecycle callbacks from an
+     * Activity or Fragment. Must be called on the main thread.
+     *
+     * @param context          any context
+     * @param samplingPeriodUs the sensor sampling period rate
+     */
+    public void registerSensorManager(@NonNull Context context, int samplingPeriodUs) {
+        if (mMotionHub != null) return;
+
+        mMotionHub = MotionHub.getInstance(context);
+        mMotionHub.registerListener(mTiltListener, samplingPeriodUs);
+    }
+
+    /**
+     * Stops moving the drawable with the device's tilt. Should be called in onPause or onStop
+     * lifecycle callbacks from an Activity or Fragment to avoid leaking sensor usage.
+     */
+    public void unregisterSensorManager() {
+        if (mMotionHub == null) return;
+
+        mMotionHub.unregisterListener(mTiltListener);
+        mMotionHub = null;
+    }
+
+    /**
+     * Sets the translation of the drawable, as a fraction of the distance it can travel from
+     * its centered position in each direction. Allows the drawable to be driven by a source
+     * other than the device's tilt. Only invalidates the drawable if it moved.
+     *
+     * @param x the horizontal translation, between -1 and 1
+     * @param y the vertical translation, between -1 and 1
+     */
+    public void setTranslate(float x, float y) {
+        final float dx = mTransform.getDx();
+        final float dy = mTransform.getDy();
+
+        mTransform.setTranslate(x, y);
+
+        if (mTransform.getDx() != dx || mTransform.getDy() != dy) {
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Retrieves the wrapped drawable.
+     *
+     * @return the drawable moved by the parallax effect
+     */
+    @NonNull
+    public Drawable getDrawable() {
+        return mDrawable;
+    }
+
+    /**
+     * Sets the intensity of the parallax effect. The stronger the effect, the more distance
+     * the drawable will have to move around.
+     *
+     * @param parallaxIntensity the new intensity
+     */
+    public void setParallaxIntensity(float parallaxIntensity) {
+        mTransform.setParallaxIntensity(parallaxIntensity);
+        configure(getBounds());
+        invalidateSelf();
+    }
+
+    /**
+     * Determines the intensity of the parallax effect.
+     *
+     * @return the parallax intensity
+     */
+    public float getParallaxIntensity() {
+        return mTransform.getParallaxIntensity();
+    }
+
+    /**
+     * Sets the parallax tilt sensitivity of the drawable. The stronger the sensitivity, the
+     * more a given tilt will move the drawable and the smaller needed tilt to reach its bounds.
+     *
+     * @param sensitivity the new tilt sensitivity
+     */
+    public void setTiltSensitivity(float sensitivity) {
+        if (sensitivity <= 0) {
+            throw new IllegalArgumentException("Tilt sensitivity must be positive");
+        }
+
+        mTiltSensitivity = sensitivity;
+    }
+
+    /**
+     * Sets whether the drawable's x and y axis' parallax intensities are scaled to its
+     * aspect ratio or equal to each other and to the smaller of the axis' intensities.
+     *
+     * @param scaledIntensities the scaledIntensities flag
+     */
+    public void setScaledIntensities(boolean scaledIntensities) {
+        mTransform.setScaledIntensities(scaledIntensities);
+    }
+
+    /**
+     * Sets the maximum percentage of the drawable that it can jump for each sensor input.
+     * Setting this value to a negative number disables the limit.
+     *
+     * @param maximumJump the maximum jump
+     */
+    public void setMaximumJump(float maximumJump) {
+        mTransform.setMaximumJump(maximumJump);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        final Rect bounds = getBounds();
+        if (bounds.isEmpty()) return;
+
+        // The wrapped drawable is laid out at its scaled size, so a single translate positions it
+        final int saveCount = canvas.save();
+        canvas.clipRect(bounds);
+        canvas.translate(bounds.left + mTransform.getDx(), bounds.top + mTransform.getDy());
+        mDrawable.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        configure(bounds);
+    }
+
+    /**
+     * Sizes the wrapped drawable to cover the bounds times the parallax intensity, and
+     * recomputes the distance it can travel. Drawables without an intrinsic size are
+     * treated as having the bounds' size.
+     *
+     * @param bounds the bounds the drawable is drawn within
+     */
+    private void configure(Rect bounds) {
+        if (bounds.isEmpty()) return;
+
+        final int width = mDrawable.getIntrinsicWidth() > 0
+                ? mDrawable.getIntrinsicWidth() : bounds.width();
+        final int height = mDrawable.getIntrinsicHeight() > 0
+                ? mDrawable.getIntrinsicHeight() : bounds.height();
+
+        mTransform.configure(width, height, bounds.width(), bounds.height());
+
+        final float scale = mTransform.getScale();
+        mDrawable.setBounds(0, 0, Math.round(width * scale), Math.round(height * scale));
+
+        // Let tiled drawables decode at the resolution they are displayed at
+        if (mDrawable instanceof TiledBitmapDrawable) {
+            ((TiledBitmapDrawable) mDrawable).setDisplayScale(scale);
+        }
+    }
+
+    /**
+     * Fills the drawable's bounds, so reports no intrinsic size of its own. Otherwise a view
+     * using it as background would be measured at least as large as the wrapped image.
+     */
+    @Override
+    public int getIntrinsicWidth() {
+        return -1;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return -1;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mDrawable.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mDrawable.setColorFilter(cf);
+    }
+
+    @Override
+    public int getOpacity() {
+        return mDrawable.getOpacity();
+    }
+
+    @Override
+    public boolean isStateful() {
+        return mDrawable.isStateful();
+    }
+
+    @Override
+    protected boolean onStateChange(int[] state) {
+        return mDrawable.setState(state);
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        return mDrawable.setLevel(level);
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        mDrawable.setVisible(visible, restart);
+        return super.setVisible(visible, restart);
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+        invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        unscheduleSelf(what);
+    }
+
+}
@@ -0,0 +1,272 @@
+package com.nvanbenschoten.motion;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.opengl.GLSurfaceView;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ParallaxGLSurfaceView extends GLSurfaceView implements SensorEventListener {
+
+    private static final String TAG = ParallaxGLSurfaceView.class.getName();
+
+    private final ParallaxRenderer mRenderer;
+    private final DisplayRotationTracker mDisplayRotationTracker;
+    private SensorManager mSensorManager;
+    private HandlerThread mSensorThread;
+
+    public ParallaxGLSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public ParallaxGLSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        mDisplayRotationTracker = new DisplayRotationTracker(context);
+        mRenderer = new ParallaxRenderer(mDisplayRotationTracker);
+
+        // Only render when a new rotation vector or setting arrives
+        setEGLContextClientVersion(2);
+        setRenderer(mRenderer);
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+
+        // Set available attributes, shared with ParallaxImageView
+        if (attrs != null) {
+            final TypedArray customAttrs = context.obtainStyledAttributes(attrs, R.styleable.ParallaxImageView);
+
+            if (customAttrs != null) {
+                if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionIntensity)) {
+                    setParallaxIntensity(customAttrs.getFloat(R.styleable.ParallaxImageView_motionIntensity, 1.2f));
+                }
+
+                if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionScaledIntensity)) {
+                    setScaledIntensities(customAttrs.getBoolean(R.styleable.ParallaxImageView_motionScaledIntensity, false));
+                }
+
+                if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionTiltSensitivity)) {
+                    setTiltSensitivity(customAttrs.getFloat(R.styleable.ParallaxImageView_motionTiltSensitivity, 2.0f));
+                }
+
+                customAttrs.recycle();
+            }
+        }
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        mDisplayRotationTracker.refresh();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        // Interpretation happens on the GL thread, once per rendered frame
+        mRenderer.publishRotationVector(event.values);
+        requestRender();
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) { }
+
+    /**
+     * Registers a sensor manager with the parallax view. Should be called in onResume
+     * or onStart lifecycle callbacks from an Activity or Fragment, along with
+     * {@link #onResume()}.
+     */
+    public void registerSensorManager() {
+        registerSensorManager(SensorManager.SENSOR_DELAY_FASTEST);
+    }
+
+    /**
+     * Registers a sensor manager with the parallax view. Sensor events are delivered on a
+     * background thread and only their latest rotation vector is kept, so the main thread is
+     * never involved in animating the image.
+     *
+     * @param samplingPeriodUs the sensor sampling period rate
+     */
+    public void registerSensorManager(int samplingPeriodUs) {
+        if (getContext() == null || mSensorManager != null) return;
+
+        // Acquires a sensor manager
+        mSensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
+
+        if (mSensorManager != null) {
+            // Start from a fresh target
+            queueEvent(new Runnable() {
+                @Override
+                public void run() {
+                    mRenderer.reset(false);
+                }
+            });
+            mDisplayRotationTracker.start();
+
+            mSensorThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+            mSensorThread.start();
+            mSensorManager.registerListener(this,
+                    mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
+                    samplingPeriodUs, new Handler(mSensorThread.getLooper()));
+        }
+    }
+
+    /**
+     * Unregisters the parallax view's SensorManager. Should be called in onPause or onStop
+     * lifecycle callbacks from an Activity or Fragment, along with {@link #onPause()}.
+     */
+    public void unregisterSensorManager() {
+        unregisterSensorManager(false);
+    }
+
+    /**
+     * Unregisters the parallax view's SensorManager.
+     *
+     * @param resetTranslation if the image translation should be reset to the origin
+     */
+    public void unregisterSensorManager(final boolean resetTranslation) {
+        if (mSensorManager == null) return;
+
+        mSensorManager.unregisterListener(this);
+        mSensorManager = null;
+        mDisplayRotationTracker.stop();
+
+        mSensorThread.quit();
+        mSensorThread = null;
+
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.reset(resetTranslation);
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Sets the image to draw. It is uploaded once as a texture on the GL thread, and kept so
+     * that it can be uploaded again if the GL context is lost. Images larger than the device's
+     * maximum texture size are downsampled to fit it when uploaded, so decoding them at the
+     * size they are displayed at avoids the extra copy.
+     *
+     * @param bitmap the image, or null to draw nothing
+     */
+    public void setImageBitmap(final Bitmap bitmap) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setBitmap(bitmap);
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Sets the intensity of the parallax effect. The stronger the effect, the more distance
+     * the image will have to move around.
+     *
+     * @param parallaxIntensity the new intensity
+     */
+    public void setParallaxIntensity(final float parallaxIntensity) {
+        if (parallaxIntensity < 1) {
+            throw new IllegalArgumentException("Parallax effect must have a intensity of 1.0 or greater");
+        }
+
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.getTransform().setParallaxIntensity(parallaxIntensity);
+                mRenderer.configure();
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Sets the parallax tilt sensitivity for the view. The stronger the sensitivity,
+     * the more a given tilt will adjust the image and the smaller needed tilt to reach the
+     * image bounds.
+     *
+     * @param sensitivity the new tilt sensitivity
+     */
+    public void setTiltSensitivity(final float sensitivity) {
+        if (sensitivity <= 0) {
+            throw new IllegalArgumentException("Tilt sensitivity must be positive");
+        }
+
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.getSensorInterpreter().setTiltSensitivity(sensitivity);
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Sets whether translation should be limited to the image's bounds or should be forced
+     * to be the same for both the x and y axis, as {@link ParallaxImageView} does.
+     *
+     * @param scaledIntensities the scaledIntensities flag
+     */
+    public void setScaledIntensities(final boolean scaledIntensities) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.getTransform().setScaledIntensities(scaledIntensities);
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Sets the maximum percentage of the image that image matrix movement can jump
+     * for each sensor input. Set to a negative number to disable.
+     *
+     * @param maximumJump the maximum jump
+     */
+    public void setMaximumJump(final float maximumJump) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.getTransform().setMaximumJump(maximumJump);
+            }
+        });
+        requestRender();
+    }
+
+    /**
+     * Sets whether tilt should be computed directly from the rotation vector's quaternion.
+     *
+     * @param quaternionEngineEnabled the quaternionEngineEnabled flag
+     */
+    public void setQuaternionEngineEnabled(final boolean quaternionEngineEnabled) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.getSensorInterpreter().setQuaternionEngineEnabled(quaternionEngineEnabled);
+            }
+        });
+    }
+
+}
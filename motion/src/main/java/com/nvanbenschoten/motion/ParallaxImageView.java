@@ -1,13 +1,27 @@
 package com.nvanbenschoten.motion;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 
 /*
@@ -30,33 +44,192 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
     private static final String TAG = ParallaxImageView.class.getName();
 
     /**
-     * If the x and y axis' intensities are scaled to the image's aspect ratio (true) or
-     * equal to the smaller of the axis' intensities (false). If true, the image will be able to
-     * translate up to it's view bounds, independent of aspect ratio. If not true,
-     * the image will limit it's translation equally so that motion in either axis results
-     * in proportional translation.
+     * The number of batched sensor events buffered before they are interpreted regardless of
+     * whether the burst has been fully delivered.
      */
-    private boolean mScaledIntensities = false;
+    private static final int SENSOR_BATCH_CAPACITY = 64;
 
     /**
-     * The intensity of the parallax effect, giving the perspective of depth.
+     * Batched sensor events within the same interval of this length are collapsed to the
+     * newest one, as only one translation can be drawn per frame.
      */
-    private float mParallaxIntensity = 1.2f;
+    private static final long BATCH_FRAME_INTERVAL_NANOS = 1000000000L / 60;
 
     /**
-     * The maximum percentage of offset translation that the image can move for each
-     * sensor input. Set to a negative number to disable.
+     * Interface definition for a callback to be invoked each time a frame-paced translation
+     * is applied.
      */
-    private float mMaximumJump = .1f;
+    public interface OnFrameCoalescedListener {
+
+        /**
+         * Called on the main thread after a frame-paced translation has been applied.
+         *
+         * @param coalescedEvents the number of sensor events folded into this frame's translation
+         */
+        void onFrameCoalesced(int coalescedEvents);
+    }
+
+    /**
+     * If sensor events should be delivered to and interpreted on a background thread owned by
+     * the view (true) or on the main thread (false). When true, only the final translation is
+     * posted to the main thread.
+     */
+    private boolean mSensorThreadEnabled = false;
+
+    /**
+     * If tilt should be applied through view properties composited by the RenderThread (true)
+     * or by updating the ImageView's matrix (false). Only honored on API 23 and above.
+     */
+    private boolean mCompositedTranslationEnabled = false;
+
+    /**
+     * If the drawable should be rendered once at its parallax scale into a cached bitmap that
+     * each frame copies at an integer offset (true), or scaled by the image matrix on every
+     * draw (false).
+     */
+    private boolean mRenderCacheEnabled = false;
+
+    // The cached rendering, the drawable and scale it was rendered at, and the offset it was
+    // last drawn at. Only accessed on the main thread.
+    private Bitmap mRenderCache;
+    private Canvas mRenderCacheCanvas;
+    private Drawable mRenderCacheDrawable;
+    private float mRenderCacheScale;
+    private boolean mRenderCacheDirty;
+    private int mRenderCacheLeft;
+    private int mRenderCacheTop;
+
+    /**
+     * If the view should receive tilt from the process-wide {@link MotionHub} (true) or
+     * register its own rotation vector listener (false).
+     */
+    private boolean mSharedSensorEnabled = false;
+
+    /**
+     * If the sensor should be registered while the view is visible on screen and unregistered
+     * otherwise (true), or only through explicit calls (false).
+     */
+    private boolean mAutoRegistrationEnabled = false;
+    private int mAutoSamplingPeriodUs = SensorManager.SENSOR_DELAY_FASTEST;
+    private Rect mVisibleRect;
 
     // Instance variables used during matrix manipulation.
     private SensorInterpreter mSensorInterpreter;
+    private DisplayRotationTracker mDisplayRotationTracker;
     private SensorManager mSensorManager;
+    private MotionHub mMotionHub;
+    private HandlerThread mSensorThread;
+    private Handler mSensorHandler;
+    private Handler mMainHandler;
+    private int mSamplingPeriodUs;
+    private volatile AdaptiveSampler mAdaptiveSampler;
+
+    // Degrades the effect under thermal, battery, or jank pressure, and the timestamp of the
+    // last translation applied while updates are coarse.
+    private volatile PerformanceGovernor mPerformanceGovernor;
+    private long mLastCoarseUpdateTimestamp;
+    private final PerformanceGovernor.OnLevelChangedListener mGovernorListener =
+            new PerformanceGovernor.OnLevelChangedListener() {
+                @Override
+                public void onLevelChanged(int previousLevel, int level, int pressure) {
+                    updateSensorRegistration();
+                }
+            };
+
+    private int mMaxReportLatencyUs;
+
+    // The source requested by the caller, or null to select one within the power budget, and
+    // the source of the current registration.
+    private MotionSource mMotionSource;
+    private float mPowerBudgetMa = MotionSource.POWER_BUDGET_UNLIMITED;
+    private volatile MotionSource mActiveMotionSource;
+
+    // Guards registration changes made from the sensor thread by the adaptive sampler.
+    private final Object mSensorRegistrationLock = new Object();
+
+    // Events of a hardware batch, buffered on the sensor thread until the burst is delivered.
+    private volatile SensorEventBatch mSensorEventBatch;
+    private boolean mSensorEventBatchDrainPosted;
+
+    private volatile FramePacer mFramePacer;
+    private OnFrameCoalescedListener mOnFrameCoalescedListener;
+    private int mLastCoalescedEventCount;
+    private ParallaxTransform mTransform;
     private Matrix mTranslationMatrix;
-    private float mXTranslation;
-    private float mYTranslation;
-    private float mXOffset;
-    private float mYOffset;
+    private Rect mCompositedClipBounds;
+    private volatile TiltFilter mTiltFilter;
+    private final float[] mFilteredTranslation = new float[2];
+
+    // Whether the tilt filter should be reset by the thread filtering tilt before its next use.
+    private volatile boolean mTiltFilterResetRequested = false;
+
+    // Optional runtime metrics, and the sensor timestamp of the last applied translation not yet drawn.
+    private volatile ParallaxMetrics mMetrics;
+    private long mUndrawnTimestamp;
+
+    // Latest translation interpreted on the sensor thread, waiting to be applied on the main thread.
+    private final Object mPendingTranslationLock = new Object();
+    private float mPendingXTranslation;
+    private float mPendingYTranslation;
+    private long mPendingTimestamp;
+    private boolean mPendingTranslationPosted;
+
+    private final Runnable mApplyPendingTranslation = new Runnable() {
+        @Override
+        public void run() {
+            float x, y;
+            long timestamp;
+            synchronized (mPendingTranslationLock) {
+                x = mPendingXTranslation;
+                y = mPendingYTranslation;
+                timestamp = mPendingTimestamp;
+                mPendingTranslationPosted = false;
+            }
+
+            // Drop translations that arrive after the sensor manager was unregistered
+            if (isSensorRegistered()) {
+                setTranslate(x, y, timestamp);
+            }
+        }
+    };
+
+    private final Runnable mDrainSensorEventBatch = new Runnable() {
+        @Override
+        public void run() {
+            mSensorEventBatchDrainPosted = false;
+
+            final SensorEventBatch sensorEventBatch = mSensorEventBatch;
+            if (sensorEventBatch != null) {
+                drainSensorEventBatch(sensorEventBatch);
+            }
+        }
+    };
+
+    private final MotionHub.OnTiltChangedListener mSharedTiltListener = new MotionHub.OnTiltChangedListener() {
+        @Override
+        public void onTiltChanged(float[] tilt, long timestamp) {
+            final float tiltSensitivity = mSensorInterpreter.getTiltSensitivity();
+            onTiltInterpreted(SensorInterpreter.scaleTilt(tilt[2], tiltSensitivity),
+                    -SensorInterpreter.scaleTilt(tilt[1], tiltSensitivity), timestamp);
+        }
+    };
+
+    // Re-evaluate on-screen visibility as ancestors scroll or lay out
+    private final ViewTreeObserver.OnScrollChangedListener mAutoRegistrationScrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updateAutoRegistration();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mAutoRegistrationLayoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            updateAutoRegistration();
+        }
+    };
 
     public ParallaxImageView(Context context) {
         this(context, null);
@@ -70,8 +243,11 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
         super(context, attrs, defStyle);
 
         // Instantiate future objects
+        mTransform = new ParallaxTransform();
         mTranslationMatrix = new Matrix();
         mSensorInterpreter = new SensorInterpreter();
+        mDisplayRotationTracker = new DisplayRotationTracker(context);
+        mMainHandler = new Handler(Looper.getMainLooper());
 
         // Sets scale type
         setScaleType(ScaleType.MATRIX);
@@ -82,11 +258,13 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
 
             if (customAttrs != null) {
                 if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionIntensity)) {
-                    setParallaxIntensity(customAttrs.getFloat(R.styleable.ParallaxImageView_motionIntensity, mParallaxIntensity));
+                    setParallaxIntensity(customAttrs.getFloat(R.styleable.ParallaxImageView_motionIntensity,
+                            mTransform.getParallaxIntensity()));
                 }
 
                 if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionScaledIntensity)) {
-                    setScaledIntensities(customAttrs.getBoolean(R.styleable.ParallaxImageView_motionScaledIntensity, mScaledIntensities));
+                    setScaledIntensities(customAttrs.getBoolean(R.styleable.ParallaxImageView_motionScaledIntensity,
+                            mTransform.isScaledIntensities()));
                 }
 
                 if (customAttrs.hasValue(R.styleable.ParallaxImageView_motionTiltSensitivity)) {
@@ -108,21 +286,122 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
     }
 
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
         configureMatrix();
     }
 
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final Bitmap renderCache = isRenderCacheActive() ? getRenderCache() : null;
+        if (renderCache != null) {
+            // An unscaled copy at whole pixels, which needs no filtering
+            canvas.drawBitmap(renderCache, getPaddingLeft() + mRenderCacheLeft,
+                    getPaddingTop() + mRenderCacheTop, null);
+        } else {
+            // The cache could not be built, draw through an up to date image matrix instead
+            if (isRenderCacheActive()) {
+                applyImageMatrix();
+            }
+            super.onDraw(canvas);
+        }
+
+        onEffectFrame();
+
+        // Measure latency on the first draw of each translation
+        final ParallaxMetrics metrics = mMetrics;
+        if (metrics != null && mUndrawnTimestamp != 0) {
+            metrics.recordLatency(getSensorClockNanos() - mUndrawnTimestamp);
+            mUndrawnTimestamp = 0;
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (mAutoRegistrationEnabled) {
+            addAutoRegistrationListeners();
+            updateAutoRegistration();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mAutoRegistrationEnabled) {
+            removeAutoRegistrationListeners();
+            unregisterSensorManager();
+        }
+
+        // Rebuilt on the next draw after reattaching
+        releaseRenderCache();
+
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable drawable) {
+        // Changes to the drawable's own content must be rendered into the cache again
+        if (drawable == getDrawable()) {
+            mRenderCacheDirty = true;
+        }
+
+        super.invalidateDrawable(drawable);
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAutoRegistration();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAutoRegistration();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updateAutoRegistration();
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        mDisplayRotationTracker.refresh();
+
+        if (mMotionHub != null) {
+            mMotionHub.refreshDisplayRotation();
+        }
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (mSensorInterpreter == null) return;
-        final float[] vectors = mSensorInterpreter.interpretSensorEvent(getContext(), event);
+
+        // Buffer batched events and interpret the whole burst once it has been delivered
+        final SensorEventBatch sensorEventBatch = mSensorEventBatch;
+        if (sensorEventBatch != null) {
+            if (sensorEventBatch.add(mSensorInterpreter.getRotationVectorFromSensorEvent(event),
+                    event.timestamp)) {
+                drainSensorEventBatch(sensorEventBatch);
+            } else if (!mSensorEventBatchDrainPosted) {
+                mSensorEventBatchDrainPosted = true;
+                (mSensorHandler != null ? mSensorHandler : mMainHandler).post(mDrainSensorEventBatch);
+            }
+            return;
+        }
+
+        final float[] vectors = mSensorInterpreter.interpretSensorEvent(
+                mDisplayRotationTracker.getRotation(), event,
+                SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
 
         // Return if interpretation of data failed
         if (vectors == null) return;
 
-        // Set translation on ImageView matrix
-        setTranslate(vectors[2], -vectors[1]);
+        onSensorTilt(vectors[2], -vectors[1], event.timestamp);
     }
 
     @Override
@@ -143,15 +422,95 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
      * @param samplingPeriodUs the sensor sampling period rate
      */
     public void registerSensorManager(int samplingPeriodUs) {
-        if (getContext() == null || mSensorManager != null) return;
+        if (getContext() == null || isSensorRegistered()) return;
+
+        if (mSharedSensorEnabled) {
+            mTiltFilterResetRequested = true;
+            mSamplingPeriodUs = samplingPeriodUs;
+            mMotionHub = MotionHub.getInstance(getContext());
+            if (!isFrozen()) {
+                mMotionHub.registerListener(mSharedTiltListener, getEffectiveSamplingPeriodUs());
+            }
+            startPerformanceGovernor();
+            return;
+        }
 
         // Acquires a sensor manager
         mSensorManager = (SensorManager) getContext().getSystemService(Context.SENSOR_SERVICE);
 
         if (mSensorManager != null) {
-            mSensorManager.registerListener(this,
-                    mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
-                    samplingPeriodUs);
+            // Start from a fresh target in case a previous sensor thread was still interpreting
+            mSensorInterpreter.reset();
+            mTiltFilterResetRequested = true;
+            final AdaptiveSampler adaptiveSampler = mAdaptiveSampler;
+            if (adaptiveSampler != null) {
+                adaptiveSampler.reset();
+            }
+            mDisplayRotationTracker.start();
+
+            // A null handler delivers sensor events on the main thread
+            mSensorHandler = null;
+            if (mSensorThreadEnabled) {
+                mSensorThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+                mSensorThread.start();
+                mSensorHandler = new Handler(mSensorThread.getLooper());
+            }
+
+            synchronized (mSensorRegistrationLock) {
+                final MotionSource motionSource = (mMotionSource != null)
+                        ? mMotionSource : MotionSource.select(mSensorManager, mPowerBudgetMa);
+                motionSource.reset();
+                mActiveMotionSource = motionSource;
+                mSensorInterpreter.setMotionSource(motionSource);
+
+                final Sensor sensor = mSensorManager.getDefaultSensor(motionSource.getSensorType());
+                mSensorEventBatch = isSensorBatchingSupported(sensor)
+                        ? new SensorEventBatch(SENSOR_BATCH_CAPACITY) : null;
+                mSensorEventBatchDrainPosted = false;
+
+                mSamplingPeriodUs = samplingPeriodUs;
+                if (!isFrozen()) {
+                    registerMotionSensorListener(sensor, getEffectiveSamplingPeriodUs());
+                }
+            }
+
+            startPerformanceGovernor();
+        }
+    }
+
+    /**
+     * Starts the performance governor on behalf of this view and listens for its level
+     * changes, once the sensor manager has been registered. The governor may change its level
+     * right away, re-registering the sensor through the level listener.
+     */
+    private void startPerformanceGovernor() {
+        final PerformanceGovernor governor = mPerformanceGovernor;
+        if (governor != null) {
+            governor.addOnLevelChangedListener(mGovernorListener);
+            governor.start();
+        }
+    }
+
+    /**
+     * Lets the performance governor watch frame timings while the registered view is drawing
+     * the effect.
+     */
+    private void onEffectFrame() {
+        final PerformanceGovernor governor = mPerformanceGovernor;
+        if (governor != null && isSensorRegistered()) {
+            governor.onEffectFrame();
+        }
+    }
+
+    /**
+     * Stops listening to the performance governor and releases this view's start, so that
+     * the process-wide governor does not hold on to views that are not registered.
+     */
+    private void stopPerformanceGovernor() {
+        final PerformanceGovernor governor = mPerformanceGovernor;
+        if (governor != null) {
+            governor.removeOnLevelChangedListener(mGovernorListener);
+            governor.stop();
         }
     }
 
@@ -170,14 +529,106 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
      * @param resetTranslation if the image translation should be reset to the origin
      */
     public void unregisterSensorManager(boolean resetTranslation) {
-        if (mSensorManager == null || mSensorInterpreter == null) return;
+        if (!isSensorRegistered() || mSensorInterpreter == null) return;
 
-        mSensorManager.unregisterListener(this);
-        mSensorManager = null;
+        if (mMotionHub != null) {
+            mMotionHub.unregisterListener(mSharedTiltListener);
+            mMotionHub = null;
+        } else {
+            synchronized (mSensorRegistrationLock) {
+                mSensorManager.unregisterListener(this);
+                mSensorManager = null;
+            }
+            mDisplayRotationTracker.stop();
+        }
+
+        if (mSensorThread != null) {
+            mSensorThread.quit();
+            mSensorThread = null;
+        }
+
+        // Discard any translation still waiting to be applied
+        if (mFramePacer != null) {
+            mFramePacer.cancel();
+        }
+        mMainHandler.removeCallbacks(mApplyPendingTranslation);
+        mMainHandler.removeCallbacks(mDrainSensorEventBatch);
+        mSensorEventBatch = null;
+        synchronized (mPendingTranslationLock) {
+            mPendingTranslationPosted = false;
+        }
+
+        // A sensor thread that has been quit may still be interpreting, so the interpreting
+        // thread resets its own state before the next event
         mSensorInterpreter.reset();
+        mTiltFilterResetRequested = true;
+
+        if (mActiveMotionSource != null) {
+            mActiveMotionSource.reset();
+            mActiveMotionSource = null;
+        }
+
+        if (mAdaptiveSampler != null) {
+            mAdaptiveSampler.reset();
+        }
+
+        stopPerformanceGovernor();
 
         if (resetTranslation) {
-            setTranslate(0, 0);
+            setTranslate(0, 0, 0);
+        }
+    }
+
+    /**
+     * Sets whether the sensor should be registered automatically, at the fastest sampling
+     * period, whenever the view is visible on screen. See
+     * {@link #setAutoRegistrationEnabled(boolean, int)}.
+     *
+     * @param autoRegistrationEnabled the autoRegistrationEnabled flag
+     */
+    public void setAutoRegistrationEnabled(boolean autoRegistrationEnabled) {
+        setAutoRegistrationEnabled(autoRegistrationEnabled, SensorManager.SENSOR_DELAY_FASTEST);
+    }
+
+    /**
+     * Sets whether the sensor should be registered automatically whenever the view is visible
+     * on screen, replacing calls to {@link #registerSensorManager(int)} and
+     * {@link #unregisterSensorManager()} from lifecycle callbacks. The view counts as visible
+     * while it is attached to a window that is visible and has focus, it and all of its
+     * ancestors are visible, and part of it lies within the screen, so views scrolled out of a
+     * list, hidden, detached or covered by a dialog or another activity receive no sensor
+     * events and are not redrawn. Must be called on the main thread.
+     *
+     * @param autoRegistrationEnabled the autoRegistrationEnabled flag
+     * @param samplingPeriodUs        the sensor sampling period rate used while visible
+     */
+    public void setAutoRegistrationEnabled(boolean autoRegistrationEnabled, int samplingPeriodUs) {
+        final boolean attached = getWindowToken() != null;
+
+        if (autoRegistrationEnabled) {
+            if (mVisibleRect == null) {
+                mVisibleRect = new Rect();
+            }
+
+            // Pick up a new sampling period through a fresh registration
+            if (mAutoRegistrationEnabled && mAutoSamplingPeriodUs != samplingPeriodUs) {
+                unregisterSensorManager();
+            }
+
+            if (!mAutoRegistrationEnabled && attached) {
+                addAutoRegistrationListeners();
+            }
+
+            mAutoRegistrationEnabled = true;
+            mAutoSamplingPeriodUs = samplingPeriodUs;
+            updateAutoRegistration();
+        } else if (mAutoRegistrationEnabled) {
+            if (attached) {
+                removeAutoRegistrationListeners();
+            }
+
+            mAutoRegistrationEnabled = false;
+            unregisterSensorManager();
         }
     }
 
@@ -188,14 +639,19 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
      * @param parallaxIntensity the new intensity
      */
     public void setParallaxIntensity(float parallaxIntensity) {
-        if (parallaxIntensity < 1) {
-            throw new IllegalArgumentException("Parallax effect must have a intensity of 1.0 or greater");
-        }
-
-        mParallaxIntensity = parallaxIntensity;
+        mTransform.setParallaxIntensity(parallaxIntensity);
         configureMatrix();
     }
 
+    /**
+     * Determines the intensity of the parallax effect.
+     *
+     * @return the parallax intensity
+     */
+    public float getParallaxIntensity() {
+        return mTransform.getParallaxIntensity();
+    }
+
     /**
      * Sets the parallax tilt sensitivity for the image view. The stronger the sensitivity,
      * the more a given tilt will adjust the image and the smaller needed tilt to reach the
@@ -207,6 +663,166 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
         mSensorInterpreter.setTiltSensitivity(sensitivity);
     }
 
+    /**
+     * Sets whether runtime metrics should be collected: sensor events received, dropped, and
+     * clamped by the maximum jump, translations applied, interpretation and matrix
+     * configuration times, and the latency from sensor event to draw. Collecting does not
+     * allocate, and nothing is measured while disabled. Interpretation is not measured while
+     * the shared sensor is enabled, as the {@link MotionHub} interprets events for all views.
+     *
+     * @param metricsEnabled the metricsEnabled flag
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        if (metricsEnabled && mMetrics == null) {
+            mMetrics = new ParallaxMetrics();
+        } else if (!metricsEnabled) {
+            mMetrics = null;
+            mUndrawnTimestamp = 0;
+        }
+
+        mSensorInterpreter.setMetrics(mMetrics);
+    }
+
+    /**
+     * Retrieves the runtime metrics, to be polled with {@link ParallaxMetrics#snapshot}.
+     *
+     * @return the metrics, or null if metrics are disabled
+     */
+    public ParallaxMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Retrieves the tilt state published by the view's own sensor interpretation, which any
+     * thread, such as a RenderThread, GL thread, or game loop, may snapshot without locking
+     * or allocating. Not updated while the shared sensor is enabled, use
+     * {@link MotionHub#getTiltState()} instead.
+     *
+     * @return the tilt state
+     */
+    public TiltState getTiltState() {
+        return mSensorInterpreter.getTiltState();
+    }
+
+    /**
+     * Sets the maximum time in microseconds that sensor events may be held in the
+     * sensor hub's hardware FIFO before being delivered. Batching lets the application
+     * processor sleep between bursts, which are then interpreted in one pass keeping only the
+     * newest event per frame. Trades latency for power, so keep it short for visible views.
+     * Takes effect on the next call to {@link #registerSensorManager(int)} and is only honored
+     * on API 19 and above, on sensors that support batching, and while the shared sensor is
+     * disabled.
+     *
+     * @param maxReportLatencyUs the maximum report latency, or 0 to disable batching
+     */
+    public void setMaxReportLatency(int maxReportLatencyUs) {
+        if (maxReportLatencyUs < 0) {
+            throw new IllegalArgumentException("Maximum report latency must not be negative");
+        }
+
+        mMaxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /**
+     * Sets whether the sensor sampling rate should adapt to motion. When enabled, the view
+     * re-registers at the {@link AdaptiveSampler}'s idle sampling period once tilt has stayed
+     * nearly still for a while, and snaps back to the rate passed to
+     * {@link #registerSensorManager(int)} as soon as motion resumes. Does not apply while
+     * the shared sensor is enabled.
+     *
+     * @param adaptiveSamplingEnabled the adaptiveSamplingEnabled flag
+     */
+    public void setAdaptiveSamplingEnabled(boolean adaptiveSamplingEnabled) {
+        if (adaptiveSamplingEnabled && mAdaptiveSampler == null) {
+            mAdaptiveSampler = new AdaptiveSampler();
+        } else if (!adaptiveSamplingEnabled && mAdaptiveSampler != null) {
+            final AdaptiveSampler adaptiveSampler = mAdaptiveSampler;
+            mAdaptiveSampler = null;
+
+            // Restore the requested rate if the sampler had lowered it
+            if (adaptiveSampler.getState() == AdaptiveSampler.STATE_IDLE) {
+                adaptiveSampler.reset();
+                updateSensorRegistration();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the adaptive sampler, to tune its thresholds or inspect its state.
+     *
+     * @return the adaptive sampler, or null if adaptive sampling is disabled
+     */
+    public AdaptiveSampler getAdaptiveSampler() {
+        return mAdaptiveSampler;
+    }
+
+    /**
+     * Attaches the view to a performance governor, usually the process-wide
+     * {@link PerformanceGovernor#getInstance(Context)}, so that the effect degrades under
+     * thermal, battery, or jank pressure. While the sensor manager is registered, the
+     * governor watches the battery temperature, battery saver mode, and frame timings, and
+     * steps through lower sampling rates, coarser updates, and finally freezing the image in
+     * place, recovering once the pressure has eased for a while. With the shared sensor
+     * enabled, the view asks the {@link MotionHub} for the reduced sampling period and leaves
+     * it while frozen, so the shared sensor slows down or stops unless other listeners still
+     * need it. Must be called on the main thread.
+     *
+     * @param performanceGovernor the governor to attach to, or null to detach
+     */
+    public void setPerformanceGovernor(PerformanceGovernor performanceGovernor) {
+        if (mPerformanceGovernor == performanceGovernor) return;
+
+        final boolean registered = isSensorRegistered();
+        if (registered) {
+            stopPerformanceGovernor();
+        }
+
+        mPerformanceGovernor = performanceGovernor;
+        if (registered) {
+            startPerformanceGovernor();
+        }
+
+        // Apply the new governor's level, or restore the requested quality
+        updateSensorRegistration();
+    }
+
+    /**
+     * Retrieves the performance governor, to tune its thresholds or listen for level changes.
+     *
+     * @return the performance governor, or null if none is attached
+     */
+    public PerformanceGovernor getPerformanceGovernor() {
+        return mPerformanceGovernor;
+    }
+
+    /**
+     * Sets whether tilt should be computed directly from the rotation vector's quaternion
+     * instead of through rotation matrices. Both produce the same translation, but the
+     * quaternion engine skips the yaw axis, which the view does not use.
+     *
+     * @param quaternionEngineEnabled the quaternionEngineEnabled flag
+     */
+    public void setQuaternionEngineEnabled(boolean quaternionEngineEnabled) {
+        mSensorInterpreter.setQuaternionEngineEnabled(quaternionEngineEnabled);
+    }
+
+    /**
+     * Sets the filter that interpreted tilt passes through before being applied to the image.
+     * A smoothing filter such as {@link OneEuroTiltFilter} or {@link LowPassTiltFilter} allows
+     * registering at slower sampling rates like {@link SensorManager#SENSOR_DELAY_GAME} while
+     * keeping motion smooth. The filter is called on the thread sensor events are interpreted
+     * on, and is reset when the sensor manager is unregistered.
+     *
+     * @param tiltFilter the tilt filter, or null to apply tilt unfiltered
+     */
+    public void setTiltFilter(TiltFilter tiltFilter) {
+        if (tiltFilter != null) {
+            tiltFilter.reset();
+        }
+
+        mTiltFilter = tiltFilter;
+    }
+
     /**
      * Sets whether translation should be limited to the image's bounds or should be limited
      * to the smaller of the two axis' translation limits.
@@ -214,7 +830,7 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
      * @param scaledIntensities the scaledIntensities flag
      */
     public void setScaledIntensities(boolean scaledIntensities) {
-        mScaledIntensities = scaledIntensities;
+        mTransform.setScaledIntensities(scaledIntensities);
     }
 
     /**
@@ -224,88 +840,696 @@ public class ParallaxImageView extends ImageView implements SensorEventListener
      * @param maximumJump the new maximum jump
      */
     public void setMaximumJump(float maximumJump) {
-        mMaximumJump = maximumJump;
+        mTransform.setMaximumJump(maximumJump);
     }
 
     /**
-     * Sets the image view's translation coordinates. These values must be between -1 and 1,
-     * representing the transaction percentage from the center.
+     * Sets whether sensor events should be delivered to and interpreted on a background
+     * thread owned by the view. When enabled, all rotation matrix math runs off of the main
+     * thread and only the resulting translation is applied on the main thread, at most once
+     * per main thread message. Takes effect on the next call to
+     * {@link #registerSensorManager(int)}.
      *
-     * @param x the horizontal translation
-     * @param y the vertical translation
+     * @param sensorThreadEnabled the sensorThreadEnabled flag
      */
-    private void setTranslate(float x, float y) {
-        if (Math.abs(x) > 1 || Math.abs(y) > 1) {
-            throw new IllegalArgumentException("Parallax effect cannot translate more than 100% of its off-screen size");
+    public void setSensorThreadEnabled(boolean sensorThreadEnabled) {
+        mSensorThreadEnabled = sensorThreadEnabled;
+    }
+
+    /**
+     * Sets the source of motion the view's own sensor registration reads, such as
+     * {@link MotionSource#gravity()} to derive pitch and roll from the gravity sensor instead
+     * of keeping the fused rotation vector's gyroscope and magnetometer powered. A source keeps
+     * per view state, so must not be shared between views. Takes effect on the next call to
+     * {@link #registerSensorManager(int)}, and does not apply while the shared sensor is enabled.
+     *
+     * @param motionSource the motion source, or null to select one within the power budget
+     */
+    public void setMotionSource(MotionSource motionSource) {
+        mMotionSource = motionSource;
+    }
+
+    /**
+     * Sets the maximum current in mA, as reported by {@link Sensor#getPower()}, the sensor
+     * backing an automatically selected motion source may draw. The most accurate available
+     * source within the budget is used, out of the rotation vector, game rotation vector,
+     * gravity, and accelerometer, or the one drawing the least current if none fits. Takes
+     * effect on the next call to {@link #registerSensorManager(int)} while no motion source
+     * is set.
+     *
+     * @param powerBudgetMa the power budget, or {@link MotionSource#POWER_BUDGET_UNLIMITED}
+     */
+    public void setPowerBudget(float powerBudgetMa) {
+        if (powerBudgetMa < 0) {
+            throw new IllegalArgumentException("Power budget must not be negative");
         }
 
-        float xScale, yScale;
+        mPowerBudgetMa = powerBudgetMa;
+    }
+
+    /**
+     * Sets whether the view should receive tilt from the process-wide {@link MotionHub}
+     * instead of registering its own rotation vector listener. Views sharing the hub share a
+     * single sensor registration, interpretation and tilt target, while still applying their
+     * own tilt sensitivity. Tilt is delivered on the main thread, so
+     * {@link #setSensorThreadEnabled(boolean)} does not apply in this mode. Takes effect on the
+     * next call to {@link #registerSensorManager(int)}.
+     *
+     * @param sharedSensorEnabled the sharedSensorEnabled flag
+     */
+    public void setSharedSensorEnabled(boolean sharedSensorEnabled) {
+        mSharedSensorEnabled = sharedSensorEnabled;
+    }
+
+    /**
+     * Sets whether the drawable should be rendered once, at exactly the view size times the
+     * parallax intensity, into a cached bitmap. Each frame then copies the cached bitmap
+     * unscaled at a whole pixel offset, instead of filtering and scaling the full drawable,
+     * which matters most for large photos on low end GPUs. The cache is only rebuilt when the
+     * drawable, its content, the view size, or the parallax intensity change, and costs one
+     * ARGB bitmap of the scaled size while attached. Not applied to
+     * {@link TiledBitmapDrawable}s, or while composited translation is enabled. Must be
+     * called on the main thread.
+     *
+     * @param renderCacheEnabled the renderCacheEnabled flag
+     */
+    public void setRenderCacheEnabled(boolean renderCacheEnabled) {
+        if (mRenderCacheEnabled == renderCacheEnabled) return;
+
+        mRenderCacheEnabled = renderCacheEnabled;
+        if (!renderCacheEnabled) {
+            releaseRenderCache();
+        }
+
+        configureMatrix();
+        invalidate();
+    }
+
+    /**
+     * Sets whether tilt should be applied through view properties instead of the ImageView's
+     * matrix. When enabled, the drawable is recorded into the view's display list once per
+     * size, drawable or intensity change, and each tilt update only changes the view's
+     * translation and clip bounds, which the RenderThread composites without re-recording
+     * or invalidating the view's content. Requires API 23 or above, and is ignored on older
+     * platforms: before API 23, changing the clip bounds invalidates the view and re-records
+     * its display list on every tilt, which is the cost this mode exists to avoid.
+     * <p>
+     * The view's scale, pivot and translation properties are owned by the parallax effect
+     * while this mode is enabled. It is best suited to full bleed images without a background.
+     *
+     * @param compositedTranslationEnabled the compositedTranslationEnabled flag
+     */
+    public void setCompositedTranslationEnabled(boolean compositedTranslationEnabled) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return;
+        if (mCompositedTranslationEnabled == compositedTranslationEnabled) return;
+
+        mCompositedTranslationEnabled = compositedTranslationEnabled;
+
+        if (compositedTranslationEnabled) {
+            mCompositedClipBounds = new Rect();
+        } else {
+            resetCompositedProperties();
+        }
+
+        configureMatrix();
+    }
+
+    /**
+     * Sets whether translations should be paced to the display's vsync. When enabled, sensor
+     * events only update a latest value slot and at most one matrix update is applied per
+     * frame. Frame callbacks are only scheduled while new sensor data is arriving. Requires
+     * API 16 or above, and is ignored on older platforms. Must be called on the main thread.
+     *
+     * @param framePacingEnabled the framePacingEnabled flag
+     */
+    public void setFramePacingEnabled(boolean framePacingEnabled) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return;
+
+        if (framePacingEnabled && mFramePacer == null) {
+            mFramePacer = new FramePacer(new FramePacer.Callback() {
+                @Override
+                public void onFrame(float x, float y, long timestamp, int coalescedEvents) {
+                    // Drop translations that arrive after the sensor manager was unregistered
+                    if (!isSensorRegistered()) return;
+
+                    setTranslate(x, y, timestamp);
+                    mLastCoalescedEventCount = coalescedEvents;
+
+                    if (mOnFrameCoalescedListener != null) {
+                        mOnFrameCoalescedListener.onFrameCoalesced(coalescedEvents);
+                    }
+                }
+            });
+        } else if (!framePacingEnabled && mFramePacer != null) {
+            mFramePacer.cancel();
+            mFramePacer = null;
+        }
+    }
+
+    /**
+     * Sets a listener to be notified each time a frame-paced translation is applied.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setOnFrameCoalescedListener(OnFrameCoalescedListener listener) {
+        mOnFrameCoalescedListener = listener;
+    }
+
+    /**
+     * Determines how many sensor events were folded into the most recent frame-paced
+     * translation.
+     *
+     * @return the number of coalesced events, or 0 if no frame-paced translation was applied
+     */
+    public int getLastCoalescedEventCount() {
+        return mLastCoalescedEventCount;
+    }
+
+    /**
+     * Determines if the view is currently receiving sensor events, either from its own
+     * SensorManager registration or from the shared {@link MotionHub}.
+     *
+     * @return true if registered
+     */
+    private boolean isSensorRegistered() {
+        return mSensorManager != null || mMotionHub != null;
+    }
+
+    /**
+     * Registers or unregisters the sensor to match the view's on-screen visibility, if
+     * automatic registration is enabled.
+     */
+    private void updateAutoRegistration() {
+        if (!mAutoRegistrationEnabled) return;
 
-        if (mScaledIntensities) {
-            // Set both scales to their offset values
-            xScale = mXOffset;
-            yScale = mYOffset;
+        if (isVisibleOnScreen()) {
+            registerSensorManager(mAutoSamplingPeriodUs);
         } else {
-            // Set both scales to the max offset (should be negative, so smaller absolute value)
-            xScale = Math.max(mXOffset, mYOffset);
-            yScale = Math.max(mXOffset, mYOffset);
-        }
-
-        // Make sure below maximum jump limit
-        if (mMaximumJump > 0) {
-            // Limit x jump
-            if (x - mXTranslation / xScale > mMaximumJump) {
-                x = mXTranslation / xScale + mMaximumJump;
-            } else if (x - mXTranslation / xScale < -mMaximumJump) {
-                x = mXTranslation / xScale - mMaximumJump;
+            unregisterSensorManager();
+        }
+    }
+
+    /**
+     * Determines if any part of the view can currently be seen by the user.
+     *
+     * @return true if the view is attached, shown in a focused and visible window, and at
+     * least partially within the screen
+     */
+    private boolean isVisibleOnScreen() {
+        return getWindowToken() != null
+                && getWindowVisibility() == VISIBLE
+                && hasWindowFocus()
+                && isShown()
+                && getGlobalVisibleRect(mVisibleRect);
+    }
+
+    /**
+     * Starts observing scrolls and layouts of the view hierarchy, which may move the view
+     * on or off screen.
+     */
+    private void addAutoRegistrationListeners() {
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mAutoRegistrationScrollListener);
+        observer.addOnGlobalLayoutListener(mAutoRegistrationLayoutListener);
+    }
+
+    /**
+     * Stops observing scrolls and layouts of the view hierarchy.
+     */
+    @SuppressWarnings("deprecation")
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeAutoRegistrationListeners() {
+        final ViewTreeObserver observer = getViewTreeObserver();
+        if (!observer.isAlive()) return;
+
+        observer.removeOnScrollChangedListener(mAutoRegistrationScrollListener);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(mAutoRegistrationLayoutListener);
+        } else {
+            observer.removeGlobalOnLayoutListener(mAutoRegistrationLayoutListener);
+        }
+    }
+
+    /**
+     * Re-registers the sensor listener at the sampling period matching the adaptive sampler's
+     * state and the performance governor's level, or leaves it unregistered while the
+     * governor has frozen the effect. With the shared sensor, the view's listener is updated
+     * on or removed from the hub instead. May be called from the sensor thread.
+     */
+    private void updateSensorRegistration() {
+        // Only set with the shared sensor, which has no sensor thread
+        final MotionHub motionHub = mMotionHub;
+        if (motionHub != null) {
+            if (isFrozen()) {
+                motionHub.unregisterListener(mSharedTiltListener);
+            } else {
+                motionHub.registerListener(mSharedTiltListener, getEffectiveSamplingPeriodUs());
+            }
+            return;
+        }
+
+        synchronized (mSensorRegistrationLock) {
+            if (mSensorManager == null) return;
+
+            mSensorManager.unregisterListener(this);
+            if (isFrozen()) return;
+
+            registerMotionSensorListener(
+                    mSensorManager.getDefaultSensor(mActiveMotionSource.getSensorType()),
+                    getEffectiveSamplingPeriodUs());
+        }
+    }
+
+    /**
+     * Determines the sampling period to register at: the requested period, the adaptive
+     * sampler's idle period while idle, and no faster than the governor's reduced period once
+     * it has degraded the effect.
+     *
+     * @return the sensor sampling period rate
+     */
+    private int getEffectiveSamplingPeriodUs() {
+        final AdaptiveSampler adaptiveSampler = mAdaptiveSampler;
+        int samplingPeriodUs = (adaptiveSampler != null
+                && adaptiveSampler.getState() == AdaptiveSampler.STATE_IDLE)
+                ? adaptiveSampler.getIdleSamplingPeriodUs()
+                : mSamplingPeriodUs;
+
+        final PerformanceGovernor governor = mPerformanceGovernor;
+        if (governor != null && governor.getLevel() >= PerformanceGovernor.LEVEL_REDUCED_SAMPLING) {
+            samplingPeriodUs = SamplingPeriods.slower(
+                    samplingPeriodUs, governor.getReducedSamplingPeriodUs());
+        }
+        return samplingPeriodUs;
+    }
+
+    /**
+     * Determines if the performance governor has frozen the effect.
+     *
+     * @return true if the effect is frozen
+     */
+    private boolean isFrozen() {
+        final PerformanceGovernor governor = mPerformanceGovernor;
+        return governor != null && governor.getLevel() == PerformanceGovernor.LEVEL_FROZEN;
+    }
+
+    /**
+     * Registers the view for events of the motion source's sensor on the sensor handler,
+     * allowing the hardware to batch them if a maximum report latency is set and batching is
+     * supported. Must be called while holding the sensor registration lock.
+     *
+     * @param sensor           the motion source's sensor
+     * @param samplingPeriodUs the sensor sampling period rate
+     */
+    private void registerMotionSensorListener(Sensor sensor, int samplingPeriodUs) {
+        if (mSensorEventBatch != null) {
+            registerBatchedListener(sensor, samplingPeriodUs);
+        } else {
+            mSensorManager.registerListener(this, sensor, samplingPeriodUs, mSensorHandler);
+        }
+    }
+
+    /**
+     * Registers the view for sensor events that may be delayed by up to the maximum report
+     * latency, letting the sensor hub buffer them while the application processor sleeps.
+     *
+     * @param sensor           the motion source's sensor
+     * @param samplingPeriodUs the sensor sampling period rate
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void registerBatchedListener(Sensor sensor, int samplingPeriodUs) {
+        mSensorManager.registerListener(this, sensor, samplingPeriodUs, mMaxReportLatencyUs,
+                mSensorHandler);
+    }
+
+    /**
+     * Determines if events from the sensor should be batched, which requires a maximum report
+     * latency, API 19, and a sensor with a hardware FIFO.
+     *
+     * @param sensor the motion source's sensor
+     * @return true if the sensor's events should be batched
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private boolean isSensorBatchingSupported(Sensor sensor) {
+        return mMaxReportLatencyUs > 0
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && sensor != null
+                && sensor.getFifoMaxEventCount() > 0;
+    }
+
+    /**
+     * Interprets a burst of batched sensor events in one pass, forwarding only the newest
+     * event of each frame.
+     *
+     * @param sensorEventBatch the batch to drain
+     */
+    private void drainSensorEventBatch(SensorEventBatch sensorEventBatch) {
+        final int count = sensorEventBatch.interpret(mSensorInterpreter,
+                mDisplayRotationTracker.getRotation(), BATCH_FRAME_INTERVAL_NANOS,
+                SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+
+        final float[] tilts = sensorEventBatch.getTilts();
+        final long[] timestamps = sensorEventBatch.getTiltTimestamps();
+        for (int i = 0; i < count; i++) {
+            onSensorTilt(tilts[i * 3 + 2], -tilts[i * 3 + 1], timestamps[i]);
+        }
+    }
+
+    /**
+     * Handles a translation interpreted from the view's own sensor listener, letting
+     * the adaptive sampler observe it before it is applied.
+     *
+     * @param x         the horizontal translation
+     * @param y         the vertical translation
+     * @param timestamp the sensor timestamp of the translation in nanoseconds
+     */
+    private void onSensorTilt(float x, float y, long timestamp) {
+        // Lower or restore the sampling rate as motion stops and resumes
+        final AdaptiveSampler adaptiveSampler = mAdaptiveSampler;
+        if (adaptiveSampler != null && adaptiveSampler.onTilt(x, y, timestamp)) {
+            updateSensorRegistration();
+        }
+
+        onTiltInterpreted(x, y, timestamp);
+    }
+
+    /**
+     * Reads the clock sensor event timestamps are based on, the elapsed realtime on API 17
+     * and above.
+     *
+     * @return the current sensor clock time in nanoseconds
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static long getSensorClockNanos() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Runs an interpreted translation through the tilt filter, then hands it to the frame
+     * pacer, the main thread or directly to the ImageView matrix, depending on the configured
+     * delivery mode and the calling thread.
+     *
+     * @param x         the horizontal translation
+     * @param y         the vertical translation
+     * @param timestamp the sensor event's timestamp in nanoseconds
+     */
+    private void onTiltInterpreted(float x, float y, long timestamp) {
+        // Drop tilt the performance governor does not let through
+        final PerformanceGovernor governor = mPerformanceGovernor;
+        if (governor != null) {
+            final int level = governor.getLevel();
+            if (level == PerformanceGovernor.LEVEL_FROZEN) return;
+            if (level >= PerformanceGovernor.LEVEL_COARSE_UPDATES) {
+                if (timestamp - mLastCoarseUpdateTimestamp < governor.getCoarseUpdateIntervalNanos()) return;
+                mLastCoarseUpdateTimestamp = timestamp;
             }
+        }
 
-            // Limit y jump
-            if (y - mYTranslation / yScale > mMaximumJump) {
-                y = mYTranslation / yScale + mMaximumJump;
-            } else if (y - mYTranslation / yScale < -mMaximumJump) {
-                y = mYTranslation / yScale - mMaximumJump;
+        final TiltFilter tiltFilter = mTiltFilter;
+        if (tiltFilter != null) {
+            if (mTiltFilterResetRequested) {
+                mTiltFilterResetRequested = false;
+                tiltFilter.reset();
             }
+
+            mFilteredTranslation[0] = x;
+            mFilteredTranslation[1] = y;
+            tiltFilter.filter(mFilteredTranslation, timestamp);
+            x = mFilteredTranslation[0];
+            y = mFilteredTranslation[1];
         }
 
-        mXTranslation = x * xScale;
-        mYTranslation = y * yScale;
+        final FramePacer framePacer = mFramePacer;
+        if (framePacer != null) {
+            framePacer.publish(x, y, timestamp);
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            setTranslate(x, y, timestamp);
+        } else {
+            postTranslate(x, y, timestamp);
+        }
+    }
 
-        configureMatrix();
+    /**
+     * Stores the translation coordinates interpreted on the sensor thread and posts them to
+     * the main thread. If a previous translation has not been applied yet, it is replaced
+     * by the newer one instead of posting again.
+     *
+     * @param x         the horizontal translation
+     * @param y         the vertical translation
+     * @param timestamp the sensor timestamp of the translation in nanoseconds
+     */
+    private void postTranslate(float x, float y, long timestamp) {
+        synchronized (mPendingTranslationLock) {
+            mPendingXTranslation = x;
+            mPendingYTranslation = y;
+            mPendingTimestamp = timestamp;
+
+            if (mPendingTranslationPosted) return;
+            mPendingTranslationPosted = true;
+        }
+
+        mMainHandler.post(mApplyPendingTranslation);
+    }
+
+    /**
+     * Sets the image view's translation coordinates. These values must be between -1 and 1,
+     * representing the transaction percentage from the center.
+     *
+     * @param x         the horizontal translation
+     * @param y         the vertical translation
+     * @param timestamp the sensor timestamp of the translation in nanoseconds, or 0 if it did
+     *                  not come from a sensor event
+     */
+    private void setTranslate(float x, float y, long timestamp) {
+        final boolean clamped = mTransform.setTranslate(x, y);
+        applyMatrix();
+
+        final ParallaxMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.recordApply(clamped);
+
+            if (timestamp != 0) {
+                // Composited translations are drawn by the RenderThread without calling onDraw
+                if (mCompositedTranslationEnabled) {
+                    metrics.recordLatency(getSensorClockNanos() - timestamp);
+                } else {
+                    mUndrawnTimestamp = timestamp;
+                }
+            }
+        }
     }
 
     /**
      * Configures the ImageView's imageMatrix to allow for movement of the
-     * source image.
+     * source image. Only needs to be called when the drawable, the view size or the
+     * parallax intensity change.
      */
     private void configureMatrix() {
         if (getDrawable() == null || getWidth() == 0 || getHeight() == 0) return;
 
-        int dWidth = getDrawable().getIntrinsicWidth();
-        int dHeight = getDrawable().getIntrinsicHeight();
-        int vWidth = getWidth();
-        int vHeight = getHeight();
+        final ParallaxMetrics metrics = mMetrics;
+        final long start = (metrics != null) ? System.nanoTime() : 0;
+
+        mTransform.configure(getDrawable().getIntrinsicWidth(), getDrawable().getIntrinsicHeight(),
+                getWidth(), getHeight());
 
-        float scale;
-        float dx, dy;
+        // Let tiled drawables decode at the resolution they are displayed at
+        if (getDrawable() instanceof TiledBitmapDrawable) {
+            ((TiledBitmapDrawable) getDrawable()).setDisplayScale(mTransform.getScale());
+        }
 
-        if (dWidth * vHeight > vWidth * dHeight) {
-            scale = (float) vHeight / (float) dHeight;
-            mXOffset = (vWidth - dWidth * scale * mParallaxIntensity) * 0.5f;
-            mYOffset = (vHeight - dHeight * scale * mParallaxIntensity) * 0.5f;
+        if (mCompositedTranslationEnabled) {
+            configureCompositedMatrix();
+        }
+
+        applyMatrix();
+
+        // The cache is checked against the new size and scale on the next draw
+        if (isRenderCacheActive()) {
+            invalidate();
+        }
+
+        if (metrics != null) {
+            metrics.recordConfigure(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Applies the current scale and translation to the ImageView's imageMatrix. Reuses the
+     * same Matrix instance so that no allocation is performed per sensor event.
+     */
+    private void applyMatrix() {
+        if (getDrawable() == null || getWidth() == 0 || getHeight() == 0) return;
+
+        if (mCompositedTranslationEnabled) {
+            applyCompositedTranslation();
+            return;
+        }
+
+        // Once the cache holds the drawable, onDraw no longer reads the image matrix
+        if (isRenderCacheActive()) {
+            applyRenderCacheTranslation();
+            if (mRenderCache != null && mRenderCacheDrawable == getDrawable()) return;
+        }
+
+        applyImageMatrix();
+    }
+
+    /**
+     * Sets the current scale and translation as the ImageView's imageMatrix.
+     */
+    private void applyImageMatrix() {
+        final float scale = mTransform.getScale();
+        mTranslationMatrix.setScale(scale, scale);
+        mTranslationMatrix.postTranslate(mTransform.getDx(), mTransform.getDy());
+        setImageMatrix(mTranslationMatrix);
+    }
+
+    /**
+     * Determines if the drawable should currently be drawn from the render cache.
+     *
+     * @return true if the render cache is enabled and applies to the current drawable
+     */
+    private boolean isRenderCacheActive() {
+        final Drawable drawable = getDrawable();
+        return mRenderCacheEnabled
+                && !mCompositedTranslationEnabled
+                && drawable != null
+                && drawable.getIntrinsicWidth() > 0
+                && drawable.getIntrinsicHeight() > 0
+                && !(drawable instanceof TiledBitmapDrawable);
+    }
+
+    /**
+     * Rounds the current translation to whole pixels for the render cache, only invalidating
+     * the view if the drawn position actually moves.
+     */
+    private void applyRenderCacheTranslation() {
+        final int left = Math.round(mTransform.getDx());
+        final int top = Math.round(mTransform.getDy());
+        if (left == mRenderCacheLeft && top == mRenderCacheTop) return;
+
+        mRenderCacheLeft = left;
+        mRenderCacheTop = top;
+        invalidate();
+    }
+
+    /**
+     * Retrieves the drawable rendered at the current parallax scale, rendering it again if the
+     * drawable, its content, or the scale changed since the last call.
+     *
+     * @return the cached rendering, or null if the drawable cannot be cached
+     */
+    private Bitmap getRenderCache() {
+        final Drawable drawable = getDrawable();
+        final float scale = mTransform.getScale();
+        final int width = Math.round(drawable.getIntrinsicWidth() * scale);
+        final int height = Math.round(drawable.getIntrinsicHeight() * scale);
+        if (width <= 0 || height <= 0) return null;
+
+        if (mRenderCache != null && !mRenderCacheDirty && mRenderCacheDrawable == drawable
+                && mRenderCacheScale == scale) {
+            return mRenderCache;
+        }
+
+        // Reuse the bitmap while the scaled size stays the same
+        if (mRenderCache == null || mRenderCache.getWidth() != width
+                || mRenderCache.getHeight() != height) {
+            releaseRenderCache();
+            try {
+                mRenderCache = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                // Fall back to scaling on every draw
+                return null;
+            }
+            mRenderCacheCanvas = new Canvas(mRenderCache);
         } else {
-            scale = (float) vWidth / (float) dWidth;
-            mXOffset = (vWidth - dWidth * scale * mParallaxIntensity) * 0.5f;
-            mYOffset = (vHeight - dHeight * scale * mParallaxIntensity) * 0.5f;
+            mRenderCache.eraseColor(0);
         }
 
-        dx = mXOffset + mXTranslation;
-        dy = mYOffset + mYTranslation;
+        final int saveCount = mRenderCacheCanvas.save();
+        mRenderCacheCanvas.scale(scale, scale);
+        drawable.draw(mRenderCacheCanvas);
+        mRenderCacheCanvas.restoreToCount(saveCount);
+
+        mRenderCacheDrawable = drawable;
+        mRenderCacheScale = scale;
+        mRenderCacheDirty = false;
+        mRenderCacheLeft = Math.round(mTransform.getDx());
+        mRenderCacheTop = Math.round(mTransform.getDy());
+        return mRenderCache;
+    }
+
+    /**
+     * Drops the render cache. The bitmap is left to the garbage collector rather than
+     * recycled, as a display list recorded earlier may still reference it.
+     */
+    private void releaseRenderCache() {
+        mRenderCache = null;
+        mRenderCacheCanvas = null;
+        mRenderCacheDrawable = null;
+    }
+
+    /**
+     * Stretches the drawable to exactly fill the view and moves the parallax scale into the
+     * view's scale properties, so that the view's own bounds always contain everything that
+     * can be translated into sight. The resulting drawable position is identical to the one
+     * produced by the matrix path.
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private void configureCompositedMatrix() {
+        final int dWidth = getDrawable().getIntrinsicWidth();
+        final int dHeight = getDrawable().getIntrinsicHeight();
+        final int vWidth = getWidth();
+        final int vHeight = getHeight();
 
-        mTranslationMatrix.set(getImageMatrix());
-        mTranslationMatrix.setScale(mParallaxIntensity * scale, mParallaxIntensity * scale);
-        mTranslationMatrix.postTranslate(dx, dy);
+        mTranslationMatrix.setScale((float) vWidth / dWidth, (float) vHeight / dHeight);
         setImageMatrix(mTranslationMatrix);
+
+        setPivotX(vWidth * 0.5f);
+        setPivotY(vHeight * 0.5f);
+        setScaleX(dWidth * mTransform.getScale() / vWidth);
+        setScaleY(dHeight * mTransform.getScale() / vHeight);
+    }
+
+    /**
+     * Applies the current translation through the view's translation properties, and clips
+     * the view in its local coordinates so that the visible window stays fixed in its parent.
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private void applyCompositedTranslation() {
+        final float xTranslation = mTransform.getXTranslation();
+        final float yTranslation = mTransform.getYTranslation();
+        final float halfWidth = getWidth() * 0.5f;
+        final float halfHeight = getHeight() * 0.5f;
+        final float xScale = getScaleX();
+        final float yScale = getScaleY();
+
+        setTranslationX(xTranslation);
+        setTranslationY(yTranslation);
+        onEffectFrame();
+
+        mCompositedClipBounds.set(
+                Math.round(halfWidth - (halfWidth + xTranslation) / xScale),
+                Math.round(halfHeight - (halfHeight + yTranslation) / yScale),
+                Math.round(halfWidth + (halfWidth - xTranslation) / xScale),
+                Math.round(halfHeight + (halfHeight - yTranslation) / yScale));
+        setClipBounds(mCompositedClipBounds);
+    }
+
+    /**
+     * Restores the view properties modified by the composited translation mode.
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private void resetCompositedProperties() {
+        setScaleX(1);
+        setScaleY(1);
+        setTranslationX(0);
+        setTranslationY(0);
+        setClipBounds(null);
+        mCompositedClipBounds = null;
     }
 
 }
@@ -0,0 +1,297 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ParallaxMetrics {
+
+    /**
+     * The number of buckets in each duration histogram. Bucket 0 counts durations under 1
+     * microsecond, bucket i counts durations of at least 2^(i-1) and under 2^i microseconds,
+     * and the last bucket also counts everything longer.
+     */
+    public static final int HISTOGRAM_BUCKETS = 20;
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    /**
+     * A copy of the metrics collected over one window, filled by {@link #snapshot(Snapshot)}.
+     * Can be reused across polls so that polling does not allocate.
+     */
+    public static class Snapshot {
+
+        private long mWindowNanos;
+        private long mEventsReceived;
+        private long mEventsDropped;
+        private long mEventsClamped;
+        private long mApplies;
+        private final long[] mInterpretHistogram = new long[HISTOGRAM_BUCKETS];
+        private final long[] mConfigureHistogram = new long[HISTOGRAM_BUCKETS];
+        private final long[] mLatencyHistogram = new long[HISTOGRAM_BUCKETS];
+
+        /**
+         * Retrieves the length of the window the snapshot covers.
+         *
+         * @return the window length in nanoseconds
+         */
+        public long getWindowNanos() {
+            return mWindowNanos;
+        }
+
+        /**
+         * Retrieves the number of sensor events received during the window, including
+         * batched events superseded by a newer event in the same frame.
+         *
+         * @return the number of received events
+         */
+        public long getEventsReceived() {
+            return mEventsReceived;
+        }
+
+        /**
+         * Retrieves the number of sensor events whose interpretation produced no tilt,
+         * because they were missing or used to set the target orientation.
+         *
+         * @return the number of dropped events
+         */
+        public long getEventsDropped() {
+            return mEventsDropped;
+        }
+
+        /**
+         * Retrieves the number of translations limited by the maximum jump.
+         *
+         * @return the number of clamped translations
+         */
+        public long getEventsClamped() {
+            return mEventsClamped;
+        }
+
+        /**
+         * Retrieves the number of translations applied to the view.
+         *
+         * @return the number of applied translations
+         */
+        public long getApplies() {
+            return mApplies;
+        }
+
+        /**
+         * Retrieves the rate sensor events were received at during the window.
+         *
+         * @return the received events per second
+         */
+        public float getEventsPerSecond() {
+            return perSecond(mEventsReceived);
+        }
+
+        /**
+         * Retrieves the rate translations were applied at during the window.
+         *
+         * @return the applied translations per second
+         */
+        public float getAppliesPerSecond() {
+            return perSecond(mApplies);
+        }
+
+        /**
+         * Retrieves the histogram of time spent interpreting each sensor event, with
+         * {@link #HISTOGRAM_BUCKETS} power of two buckets.
+         *
+         * @return the interpretation time histogram, owned by the snapshot
+         */
+        public long[] getInterpretHistogram() {
+            return mInterpretHistogram;
+        }
+
+        /**
+         * Retrieves the histogram of time spent configuring the matrix for a new drawable,
+         * view size, or parallax intensity, with {@link #HISTOGRAM_BUCKETS} power of two buckets.
+         *
+         * @return the matrix configuration time histogram, owned by the snapshot
+         */
+        public long[] getConfigureHistogram() {
+            return mConfigureHistogram;
+        }
+
+        /**
+         * Retrieves the histogram of time between a sensor event's timestamp and the first
+         * draw of its translation, with {@link #HISTOGRAM_BUCKETS} power of two buckets.
+         *
+         * @return the sensor to draw latency histogram, owned by the snapshot
+         */
+        public long[] getLatencyHistogram() {
+            return mLatencyHistogram;
+        }
+
+        private float perSecond(long count) {
+            return (mWindowNanos > 0) ? count * NANOS_PER_SECOND / mWindowNanos : 0f;
+        }
+    }
+
+    // Metrics collected since the window started, guarded by this.
+    private long mWindowStartNanos;
+    private long mEventsReceived;
+    private long mEventsDropped;
+    private long mEventsClamped;
+    private long mApplies;
+    private final long[] mInterpretHistogram = new long[HISTOGRAM_BUCKETS];
+    private final long[] mConfigureHistogram = new long[HISTOGRAM_BUCKETS];
+    private final long[] mLatencyHistogram = new long[HISTOGRAM_BUCKETS];
+
+    /**
+     * Creates an empty set of metrics whose first window starts now.
+     */
+    public ParallaxMetrics() {
+        mWindowStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Copies the metrics collected since the previous snapshot into the given snapshot and
+     * starts a new window. Polling at a fixed interval yields per interval rates and
+     * histograms. Safe to call from any thread.
+     *
+     * @param snapshot the snapshot to fill
+     */
+    public synchronized void snapshot(@NonNull Snapshot snapshot) {
+        final long now = System.nanoTime();
+        snapshot.mWindowNanos = now - mWindowStartNanos;
+        snapshot.mEventsReceived = mEventsReceived;
+        snapshot.mEventsDropped = mEventsDropped;
+        snapshot.mEventsClamped = mEventsClamped;
+        snapshot.mApplies = mApplies;
+        System.arraycopy(mInterpretHistogram, 0, snapshot.mInterpretHistogram, 0, HISTOGRAM_BUCKETS);
+        System.arraycopy(mConfigureHistogram, 0, snapshot.mConfigureHistogram, 0, HISTOGRAM_BUCKETS);
+        System.arraycopy(mLatencyHistogram, 0, snapshot.mLatencyHistogram, 0, HISTOGRAM_BUCKETS);
+
+        clear(now);
+    }
+
+    /**
+     * Discards all collected metrics and starts a new window.
+     */
+    public synchronized void reset() {
+        clear(System.nanoTime());
+    }
+
+    /**
+     * Estimates a percentile of a duration histogram as the upper bound of the bucket it
+     * falls in.
+     *
+     * @param histogram a histogram from a {@link Snapshot}
+     * @param fraction  the percentile as a fraction between 0 and 1, e.g. 0.95
+     * @return the estimated percentile in microseconds, or 0 if the histogram is empty
+     */
+    public static long getPercentileMicros(@NonNull long[] histogram, float fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction must be between 0 and 1");
+        }
+
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) return 0;
+
+        final long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 1L << (histogram.length - 1);
+    }
+
+    /**
+     * Records that sensor events were received.
+     *
+     * @param count the number of received events
+     */
+    synchronized void recordEventsReceived(int count) {
+        mEventsReceived += count;
+    }
+
+    /**
+     * Records the interpretation of a sensor event.
+     *
+     * @param durationNanos the time spent interpreting the event
+     * @param dropped       if the interpretation produced no tilt
+     */
+    synchronized void recordInterpretation(long durationNanos, boolean dropped) {
+        if (dropped) {
+            mEventsDropped++;
+        }
+        mInterpretHistogram[bucket(durationNanos)]++;
+    }
+
+    /**
+     * Records a translation applied to the view.
+     *
+     * @param clamped if the translation was limited by the maximum jump
+     */
+    synchronized void recordApply(boolean clamped) {
+        mApplies++;
+        if (clamped) {
+            mEventsClamped++;
+        }
+    }
+
+    /**
+     * Records the configuration of the matrix.
+     *
+     * @param durationNanos the time spent configuring the matrix
+     */
+    synchronized void recordConfigure(long durationNanos) {
+        mConfigureHistogram[bucket(durationNanos)]++;
+    }
+
+    /**
+     * Records the time between a sensor event and the first draw of its translation.
+     *
+     * @param latencyNanos the sensor to draw latency
+     */
+    synchronized void recordLatency(long latencyNanos) {
+        mLatencyHistogram[bucket(latencyNanos)]++;
+    }
+
+    private void clear(long now) {
+        mWindowStartNanos = now;
+        mEventsReceived = 0;
+        mEventsDropped = 0;
+        mEventsClamped = 0;
+        mApplies = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            mInterpretHistogram[i] = 0;
+            mConfigureHistogram[i] = 0;
+            mLatencyHistogram[i] = 0;
+        }
+    }
+
+    /**
+     * Maps a duration to its power of two microsecond bucket.
+     *
+     * @param durationNanos the duration in nanoseconds
+     * @return the bucket index
+     */
+    static int bucket(long durationNanos) {
+        final long micros = Math.max(durationNanos, 0) / 1000;
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), HISTOGRAM_BUCKETS - 1);
+    }
+
+}
@@ -0,0 +1,310 @@
+package com.nvanbenschoten.motion;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class ParallaxRenderer implements GLSurfaceView.Renderer {
+
+    /**
+     * Positions a unit quad inside the rectangle the scaled image covers, given in normalized
+     * device coordinates as left, top, width and height.
+     */
+    private static final String VERTEX_SHADER =
+            "attribute vec2 aPosition;\n" +
+            "uniform vec4 uRect;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    vTexCoord = aPosition;\n" +
+            "    gl_Position = vec4(uRect.x + aPosition.x * uRect.z, uRect.y - aPosition.y * uRect.w, 0.0, 1.0);\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D uTexture;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
+            "}\n";
+
+    /**
+     * A unit quad as a triangle strip, doubling as texture coordinates.
+     */
+    private static final float[] QUAD = {0f, 0f, 0f, 1f, 1f, 0f, 1f, 1f};
+
+    private final DisplayRotationTracker mDisplayRotationTracker;
+
+    // State only accessed on the GL thread.
+    private final SensorInterpreter mSensorInterpreter = new SensorInterpreter();
+    private final ParallaxTransform mTransform = new ParallaxTransform();
+    private final FloatBuffer mQuad;
+    private final float[] mRotationVector3 = new float[3];
+    private final float[] mRotationVector4 = new float[4];
+    private Bitmap mBitmap;
+    private boolean mTextureDirty;
+    private int mProgram;
+    private int mPositionHandle;
+    private int mRectHandle;
+    private int mTextureHandle;
+    private int mTexture;
+    private int mMaxTextureSize;
+    private int mViewWidth;
+    private int mViewHeight;
+
+    // Latest rotation vector published by the sensor thread, waiting for the next frame.
+    private final Object mRotationVectorLock = new Object();
+    private final float[] mPendingRotationVector = new float[4];
+    private int mPendingRotationVectorLength;
+
+    /**
+     * Creates a renderer reading the screen rotation from the given tracker.
+     *
+     * @param displayRotationTracker the tracker of the screen rotation
+     */
+    ParallaxRenderer(DisplayRotationTracker displayRotationTracker) {
+        mDisplayRotationTracker = displayRotationTracker;
+        mQuad = ByteBuffer.allocateDirect(QUAD.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        mQuad.put(QUAD).position(0);
+    }
+
+    /**
+     * Stores a rotation vector to be interpreted on the next frame, replacing any rotation
+     * vector not yet interpreted. Safe to call from any thread.
+     *
+     * @param values the rotation vector, only its first four values are used
+     */
+    void publishRotationVector(float[] values) {
+        synchronized (mRotationVectorLock) {
+            mPendingRotationVectorLength = Math.min(values.length, 4);
+            System.arraycopy(values, 0, mPendingRotationVector, 0, mPendingRotationVectorLength);
+        }
+    }
+
+    /**
+     * Sets the image to draw, uploading it as a texture before the next frame. Must be called
+     * on the GL thread.
+     *
+     * @param bitmap the image, or null to draw nothing
+     */
+    void setBitmap(Bitmap bitmap) {
+        mBitmap = bitmap;
+        mTextureDirty = true;
+        configure();
+    }
+
+    /**
+     * Discards the tilt target and any pending rotation vector, and optionally centers the
+     * image. Must be called on the GL thread.
+     *
+     * @param resetTranslation if the image translation should be reset to the origin
+     */
+    void reset(boolean resetTranslation) {
+        synchronized (mRotationVectorLock) {
+            mPendingRotationVectorLength = 0;
+        }
+        mSensorInterpreter.reset();
+
+        if (resetTranslation) {
+            mTransform.setTranslate(0, 0);
+        }
+    }
+
+    /**
+     * Retrieves the interpreter, to adjust its settings. Must only be used on the GL thread.
+     *
+     * @return the sensor interpreter
+     */
+    SensorInterpreter getSensorInterpreter() {
+        return mSensorInterpreter;
+    }
+
+    /**
+     * Retrieves the transform, to adjust its settings. Must only be used on the GL thread,
+     * followed by a call to {@link #configure()}.
+     *
+     * @return the parallax transform
+     */
+    ParallaxTransform getTransform() {
+        return mTransform;
+    }
+
+    /**
+     * Recomputes the image scale and offsets for the current image and surface size, the
+     * same way {@link ParallaxImageView} configures its matrix. Must be called on the GL thread.
+     */
+    void configure() {
+        if (mBitmap == null || mViewWidth == 0 || mViewHeight == 0) return;
+
+        mTransform.configure(mBitmap.getWidth(), mBitmap.getHeight(), mViewWidth, mViewHeight);
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 unused, EGLConfig config) {
+        mProgram = createProgram();
+        mPositionHandle = GLES20.glGetAttribLocation(mProgram, "aPosition");
+        mRectHandle = GLES20.glGetUniformLocation(mProgram, "uRect");
+        mTextureHandle = GLES20.glGetUniformLocation(mProgram, "uTexture");
+
+        // A new context has no textures, upload the image again
+        final int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        mTexture = textures[0];
+        mTextureDirty = true;
+
+        final int[] maxTextureSize = new int[1];
+        GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, maxTextureSize, 0);
+        mMaxTextureSize = maxTextureSize[0];
+
+        GLES20.glClearColor(0f, 0f, 0f, 1f);
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 unused, int width, int height) {
+        GLES20.glViewport(0, 0, width, height);
+        mViewWidth = width;
+        mViewHeight = height;
+        configure();
+    }
+
+    @Override
+    public void onDrawFrame(GL10 unused) {
+        interpretPendingRotationVector();
+
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        if (mBitmap == null || mViewWidth == 0 || mViewHeight == 0) return;
+
+        if (mTextureDirty) {
+            uploadTexture();
+        }
+
+        // Convert the scaled image's rectangle from view pixels to normalized device coordinates
+        final float scale = mTransform.getScale();
+        final float left = 2 * mTransform.getDx() / mViewWidth - 1;
+        final float top = 1 - 2 * mTransform.getDy() / mViewHeight;
+        final float width = 2 * mBitmap.getWidth() * scale / mViewWidth;
+        final float height = 2 * mBitmap.getHeight() * scale / mViewHeight;
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glUniform4f(mRectHandle, left, top, width, height);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        GLES20.glUniform1i(mTextureHandle, 0);
+        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        GLES20.glVertexAttribPointer(mPositionHandle, 2, GLES20.GL_FLOAT, false, 0, mQuad);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(mPositionHandle);
+    }
+
+    /**
+     * Interprets the newest published rotation vector, if any, and applies it to the transform.
+     */
+    private void interpretPendingRotationVector() {
+        final float[] rotationVector;
+        synchronized (mRotationVectorLock) {
+            if (mPendingRotationVectorLength == 0) return;
+
+            rotationVector = (mPendingRotationVectorLength == 4) ? mRotationVector4 : mRotationVector3;
+            System.arraycopy(mPendingRotationVector, 0, rotationVector, 0, rotationVector.length);
+            mPendingRotationVectorLength = 0;
+        }
+
+        final float[] vectors = mSensorInterpreter.interpretRotationVector(
+                mDisplayRotationTracker.getRotation(), rotationVector,
+                SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+        if (vectors == null) return;
+
+        mTransform.setTranslate(vectors[2], -vectors[1]);
+    }
+
+    /**
+     * Uploads the image into the texture, downsampled if it exceeds the maximum texture size,
+     * which would otherwise leave the texture incomplete and draw a black quad. The bitmap is
+     * kept so that it can be uploaded again if the GL context is lost.
+     */
+    private void uploadTexture() {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        // The quad is sized from the original bitmap, so a smaller texture covers the same area
+        final int width = mBitmap.getWidth();
+        final int height = mBitmap.getHeight();
+        if (mMaxTextureSize > 0 && (width > mMaxTextureSize || height > mMaxTextureSize)) {
+            final float scale = Math.min((float) mMaxTextureSize / width, (float) mMaxTextureSize / height);
+            final Bitmap scaled = Bitmap.createScaledBitmap(mBitmap,
+                    Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)), true);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, scaled, 0);
+            scaled.recycle();
+        } else {
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, mBitmap, 0);
+        }
+        mTextureDirty = false;
+    }
+
+    /**
+     * Compiles and links the shader program.
+     *
+     * @return the program handle
+     */
+    private static int createProgram() {
+        final int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(program);
+
+        final int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            throw new IllegalStateException("Could not link program: " + GLES20.glGetProgramInfoLog(program));
+        }
+        return program;
+    }
+
+    /**
+     * Compiles a shader.
+     *
+     * @param type   the shader type
+     * @param source the shader source
+     * @return the shader handle
+     */
+    private static int compileShader(int type, String source) {
+        final int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        final int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            throw new IllegalStateException("Could not compile shader: " + GLES20.glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+
+}
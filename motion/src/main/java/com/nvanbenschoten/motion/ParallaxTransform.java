@@ -0,0 +1,224 @@
+package com.nvanbenschoten.motion;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class ParallaxTransform {
+
+    /**
+     * If the x and y axis' intensities are scaled to the image's aspect ratio (true) or
+     * equal to the smaller of the axis' intensities (false). If true, the image will be able to
+     * translate up to it's view bounds, independent of aspect ratio. If not true,
+     * the image will limit it's translation equally so that motion in either axis results
+     * in proportional translation.
+     */
+    private boolean mScaledIntensities = false;
+
+    /**
+     * The intensity of the parallax effect, giving the perspective of depth.
+     */
+    private float mParallaxIntensity = 1.2f;
+
+    /**
+     * The maximum percentage of offset translation that the image can move for each
+     * sensor input. Set to a negative number to disable.
+     */
+    private float mMaximumJump = .1f;
+
+    // Instance variables describing the current transform.
+    private float mScale;
+    private float mXTranslation;
+    private float mYTranslation;
+    private float mXOffset;
+    private float mYOffset;
+
+    /**
+     * Computes the scale and centering offsets for a drawable of the given intrinsic size inside
+     * a view of the given size. Must be called again whenever either size or the parallax
+     * intensity changes.
+     *
+     * @param dWidth  the drawable's intrinsic width
+     * @param dHeight the drawable's intrinsic height
+     * @param vWidth  the view's width
+     * @param vHeight the view's height
+     */
+    void configure(int dWidth, int dHeight, int vWidth, int vHeight) {
+        float scale;
+
+        if (dWidth * vHeight > vWidth * dHeight) {
+            scale = (float) vHeight / (float) dHeight;
+        } else {
+            scale = (float) vWidth / (float) dWidth;
+        }
+
+        mScale = mParallaxIntensity * scale;
+        mXOffset = (vWidth - dWidth * mScale) * 0.5f;
+        mYOffset = (vHeight - dHeight * mScale) * 0.5f;
+    }
+
+    /**
+     * Sets the translation coordinates. These values must be between -1 and 1,
+     * representing the transaction percentage from the center.
+     *
+     * @param x the horizontal translation
+     * @param y the vertical translation
+     * @return true if the translation was limited by the maximum jump
+     */
+    boolean setTranslate(float x, float y) {
+        if (Math.abs(x) > 1 || Math.abs(y) > 1) {
+            throw new IllegalArgumentException("Parallax effect cannot translate more than 100% of its off-screen size");
+        }
+
+        float xScale, yScale;
+
+        if (mScaledIntensities) {
+            // Set both scales to their offset values
+            xScale = mXOffset;
+            yScale = mYOffset;
+        } else {
+            // Set both scales to the max offset (should be negative, so smaller absolute value)
+            xScale = Math.max(mXOffset, mYOffset);
+            yScale = Math.max(mXOffset, mYOffset);
+        }
+
+        // Make sure below maximum jump limit
+        boolean clamped = false;
+        if (mMaximumJump > 0) {
+            // Limit x jump
+            if (x - mXTranslation / xScale > mMaximumJump) {
+                x = mXTranslation / xScale + mMaximumJump;
+                clamped = true;
+            } else if (x - mXTranslation / xScale < -mMaximumJump) {
+                x = mXTranslation / xScale - mMaximumJump;
+                clamped = true;
+            }
+
+            // Limit y jump
+            if (y - mYTranslation / yScale > mMaximumJump) {
+                y = mYTranslation / yScale + mMaximumJump;
+                clamped = true;
+            } else if (y - mYTranslation / yScale < -mMaximumJump) {
+                y = mYTranslation / yScale - mMaximumJump;
+                clamped = true;
+            }
+        }
+
+        mXTranslation = x * xScale;
+        mYTranslation = y * yScale;
+        return clamped;
+    }
+
+    /**
+     * Determines the scale the drawable should be drawn at, including the parallax intensity.
+     *
+     * @return the drawable scale
+     */
+    float getScale() {
+        return mScale;
+    }
+
+    /**
+     * Determines the horizontal position of the scaled drawable's left edge in view coordinates.
+     *
+     * @return the horizontal translation in pixels
+     */
+    float getDx() {
+        return mXOffset + mXTranslation;
+    }
+
+    /**
+     * Determines the vertical position of the scaled drawable's top edge in view coordinates.
+     *
+     * @return the vertical translation in pixels
+     */
+    float getDy() {
+        return mYOffset + mYTranslation;
+    }
+
+    /**
+     * Determines the horizontal distance the scaled drawable is currently translated from
+     * its centered position.
+     *
+     * @return the horizontal translation from center in pixels
+     */
+    float getXTranslation() {
+        return mXTranslation;
+    }
+
+    /**
+     * Determines the vertical distance the scaled drawable is currently translated from
+     * its centered position.
+     *
+     * @return the vertical translation from center in pixels
+     */
+    float getYTranslation() {
+        return mYTranslation;
+    }
+
+    /**
+     * Determines the horizontal centering offset of the scaled drawable, which is also the
+     * negated maximum horizontal distance it can travel in either direction.
+     *
+     * @return the horizontal offset in pixels
+     */
+    float getXOffset() {
+        return mXOffset;
+    }
+
+    /**
+     * Determines the vertical centering offset of the scaled drawable, which is also the
+     * negated maximum vertical distance it can travel in either direction.
+     *
+     * @return the vertical offset in pixels
+     */
+    float getYOffset() {
+        return mYOffset;
+    }
+
+    float getParallaxIntensity() {
+        return mParallaxIntensity;
+    }
+
+    /**
+     * Sets the intensity of the parallax effect. {@link #configure(int, int, int, int)} must
+     * be called afterwards for the new intensity to apply.
+     *
+     * @param parallaxIntensity the new intensity
+     */
+    void setParallaxIntensity(float parallaxIntensity) {
+        if (parallaxIntensity < 1) {
+            throw new IllegalArgumentException("Parallax effect must have a intensity of 1.0 or greater");
+        }
+
+        mParallaxIntensity = parallaxIntensity;
+    }
+
+    boolean isScaledIntensities() {
+        return mScaledIntensities;
+    }
+
+    void setScaledIntensities(boolean scaledIntensities) {
+        mScaledIntensities = scaledIntensities;
+    }
+
+    float getMaximumJump() {
+        return mMaximumJump;
+    }
+
+    void setMaximumJump(float maximumJump) {
+        mMaximumJump = maximumJump;
+    }
+
+}
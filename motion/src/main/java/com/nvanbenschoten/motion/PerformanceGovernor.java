@@ -0,0 +1,676 @@
+package com.nvanbenschoten.motion;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.SensorManager;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class PerformanceGovernor {
+
+    /**
+     * The parallax effect runs at the quality it was registered with.
+     */
+    public static final int LEVEL_FULL = 0;
+
+    /**
+     * The sensor is sampled no faster than the reduced sampling period.
+     */
+    public static final int LEVEL_REDUCED_SAMPLING = 1;
+
+    /**
+     * In addition to the reduced sampling period, translations are applied no more often than
+     * the coarse update interval.
+     */
+    public static final int LEVEL_COARSE_UPDATES = 2;
+
+    /**
+     * The sensor is unregistered and the image stays where it is.
+     */
+    public static final int LEVEL_FROZEN = 3;
+
+    /**
+     * The battery temperature is above a thermal threshold.
+     */
+    public static final int PRESSURE_THERMAL = 1;
+
+    /**
+     * The device is in battery saver mode.
+     */
+    public static final int PRESSURE_POWER_SAVE = 1 << 1;
+
+    /**
+     * Too many recent frames missed their vsync deadline.
+     */
+    public static final int PRESSURE_JANK = 1 << 2;
+
+    /**
+     * Interface definition for a callback invoked on the main thread when the governor
+     * changes the quality level, for example to log why the effect was degraded.
+     */
+    public interface OnLevelChangedListener {
+
+        /**
+         * Called when the quality level changed.
+         *
+         * @param previousLevel the level before the change
+         * @param level         the new level
+         * @param pressure      the PRESSURE_ flags active at the time of the change
+         */
+        void onLevelChanged(int previousLevel, int level, int pressure);
+    }
+
+    private static final long EVALUATION_INTERVAL_MS = 1000;
+
+    // A frame is janky when it takes more than this many vsync intervals.
+    private static final float JANK_FRAME_FACTOR = 1.5f;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    // Jank alone never freezes the effect, since jank unrelated to parallax would not go away.
+    private static final int MAX_JANK_LEVEL = LEVEL_COARSE_UPDATES;
+
+    // Frame timings stop being watched once no frame of the effect has been drawn for this
+    // long, or for two coarse update intervals if that is longer.
+    private static final long FRAME_MONITOR_IDLE_NANOS = 250000000L;
+
+    private static PerformanceGovernor sInstance;
+
+    /**
+     * The battery temperatures, in degrees Celsius, at or above which each degraded level is
+     * entered.
+     */
+    private float mReducedSamplingTemperature = 40f;
+    private float mCoarseUpdatesTemperature = 43f;
+    private float mFrozenTemperature = 46f;
+
+    /**
+     * The level battery saver mode degrades to at least.
+     */
+    private int mPowerSaveLevel = LEVEL_REDUCED_SAMPLING;
+
+    /**
+     * The fraction of janky frames in an evaluation window above which the level is stepped
+     * down, and below which jank no longer holds the level down. Frames between the two
+     * thresholds keep the current jank level so that it does not flip back and forth.
+     */
+    private float mJankHighThreshold = 0.2f;
+    private float mJankLowThreshold = 0.05f;
+
+    /**
+     * How long pressure must stay below the current level before recovering by one level.
+     */
+    private long mRecoveryDelayNanos = 10000000000L;
+
+    private int mReducedSamplingPeriodUs = SensorManager.SENSOR_DELAY_GAME;
+    private long mCoarseUpdateIntervalNanos = 50000000L;
+
+    // Pressure inputs and the resulting level. Everything but the level is only accessed on
+    // the main thread, the level is also read by the thread sensor events are interpreted on.
+    private volatile int mLevel = LEVEL_FULL;
+    private int mThermalLevel = LEVEL_FULL;
+    private boolean mPowerSaveMode = false;
+    private int mJankLevel = LEVEL_FULL;
+    private boolean mLevelChangedInWindow = false;
+    private boolean mRecovering = false;
+    private long mRecoveringSince;
+
+    private final List<OnLevelChangedListener> mListeners = new ArrayList<OnLevelChangedListener>();
+
+    // Monitoring state, while started by at least one client.
+    private final Context mContext;
+    private int mStartCount;
+    private FrameMonitor mFrameMonitor;
+    private boolean mEffectDrawing;
+    private long mLastEffectFrameNanos;
+    private int mWindowFrames;
+    private int mWindowJankyFrames;
+    private Handler mHandler;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onPressureIntent(intent);
+        }
+    };
+
+    private final Runnable mEvaluate = new Runnable() {
+        @Override
+        public void run() {
+            evaluate();
+            mHandler.postDelayed(this, EVALUATION_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * Retrieves the process-wide PerformanceGovernor, shared by every view attached to it so
+     * that pressure is only watched once. Must be called on the main thread.
+     *
+     * @param context any context, only its application context is retained
+     * @return the shared PerformanceGovernor
+     */
+    public static PerformanceGovernor getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new PerformanceGovernor(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PerformanceGovernor(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Starts watching the battery temperature, battery saver mode on API 21 and above, and
+     * frame timings on API 16 and above, on behalf of one more client. Pressure is watched
+     * while at least one client has started the governor and not stopped it again.
+     * {@link ParallaxImageView} starts it while its sensor manager is registered. Frame
+     * timings are observed through a callback on every vsync, which only runs while the
+     * effect is drawing and not frozen. Must be called on the main thread.
+     */
+    public void start() {
+        if (mStartCount++ > 0) return;
+
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            addPowerSaveModeAction(filter);
+        }
+
+        // The battery broadcast is sticky, so the current temperature is returned right away
+        final Intent batteryStatus = mContext.registerReceiver(mReceiver, filter);
+        if (batteryStatus != null) {
+            onPressureIntent(batteryStatus);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            onPowerSaveModeChanged(isPowerSaveMode(), System.nanoTime());
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            final WindowManager windowManager =
+                    (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
+            float refreshRate = (windowManager != null)
+                    ? windowManager.getDefaultDisplay().getRefreshRate() : DEFAULT_REFRESH_RATE;
+            if (refreshRate <= 0) {
+                refreshRate = DEFAULT_REFRESH_RATE;
+            }
+
+            mFrameMonitor = new FrameMonitor(refreshRate);
+            updateFrameMonitor();
+        }
+
+        if (mHandler == null) {
+            mHandler = new Handler(Looper.getMainLooper());
+        }
+        mHandler.postDelayed(mEvaluate, EVALUATION_INTERVAL_MS);
+    }
+
+    /**
+     * Releases one client's {@link #start()}. Once the last client has stopped, pressure is no
+     * longer watched. The current level is kept, and recovers once the governor is started
+     * again. Must be called on the main thread.
+     */
+    public void stop() {
+        if (mStartCount == 0) return;
+        if (--mStartCount > 0) return;
+
+        mContext.unregisterReceiver(mReceiver);
+
+        mEffectDrawing = false;
+        if (mFrameMonitor != null) {
+            mFrameMonitor.stop();
+            mFrameMonitor = null;
+        }
+        mHandler.removeCallbacks(mEvaluate);
+        mRecovering = false;
+    }
+
+    /**
+     * Determines if the governor is watching for pressure.
+     *
+     * @return true if at least one client has started the governor
+     */
+    public boolean isStarted() {
+        return mStartCount > 0;
+    }
+
+    /**
+     * Notes that a frame of the effect was drawn, so that frame timings are only watched
+     * while the effect is actually drawing rather than on every vsync while the sensor is
+     * idle. Must be called on the main thread.
+     */
+    void onEffectFrame() {
+        mLastEffectFrameNanos = System.nanoTime();
+        if (!mEffectDrawing) {
+            mEffectDrawing = true;
+            updateFrameMonitor();
+        }
+    }
+
+    /**
+     * Determines the current quality level. Safe to call from any thread.
+     *
+     * @return one of the LEVEL_ constants
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Determines which kinds of pressure currently degrade the quality level, or hold it down
+     * while recovering.
+     *
+     * @return a combination of the PRESSURE_ flags, 0 if there is no pressure
+     */
+    public int getPressure() {
+        int pressure = 0;
+        if (mThermalLevel > LEVEL_FULL) pressure |= PRESSURE_THERMAL;
+        if (mPowerSaveMode && mPowerSaveLevel > LEVEL_FULL) pressure |= PRESSURE_POWER_SAVE;
+        if (mJankLevel > LEVEL_FULL) pressure |= PRESSURE_JANK;
+        return pressure;
+    }
+
+    /**
+     * Adds a listener to be notified on the main thread whenever the quality level changes.
+     *
+     * @param listener the listener to add
+     */
+    public void addOnLevelChangedListener(@NonNull OnLevelChangedListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a listener added with {@link #addOnLevelChangedListener(OnLevelChangedListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeOnLevelChangedListener(@NonNull OnLevelChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Sets the battery temperatures at or above which each degraded level is entered.
+     *
+     * @param reducedSamplingCelsius the temperature of {@link #LEVEL_REDUCED_SAMPLING}
+     * @param coarseUpdatesCelsius   the temperature of {@link #LEVEL_COARSE_UPDATES}
+     * @param frozenCelsius          the temperature of {@link #LEVEL_FROZEN}
+     */
+    public void setThermalThresholds(float reducedSamplingCelsius, float coarseUpdatesCelsius,
+                                     float frozenCelsius) {
+        if (coarseUpdatesCelsius < reducedSamplingCelsius || frozenCelsius < coarseUpdatesCelsius) {
+            throw new IllegalArgumentException("Thermal thresholds must not decrease with the level");
+        }
+
+        mReducedSamplingTemperature = reducedSamplingCelsius;
+        mCoarseUpdatesTemperature = coarseUpdatesCelsius;
+        mFrozenTemperature = frozenCelsius;
+    }
+
+    /**
+     * Sets the level that battery saver mode degrades to at least.
+     *
+     * @param powerSaveLevel one of the LEVEL_ constants, {@link #LEVEL_FULL} to ignore
+     *                       battery saver mode
+     */
+    public void setPowerSaveLevel(int powerSaveLevel) {
+        if (powerSaveLevel < LEVEL_FULL || powerSaveLevel > LEVEL_FROZEN) {
+            throw new IllegalArgumentException("Power save level must be one of the LEVEL_ constants");
+        }
+
+        mPowerSaveLevel = powerSaveLevel;
+    }
+
+    /**
+     * Sets the fractions of janky frames in an evaluation window that step the level down,
+     * and that release the level again. A frame is janky when it takes longer than one and a half
+     * vsync intervals.
+     *
+     * @param lowThreshold  the janky frame fraction below which jank no longer holds the level down
+     * @param highThreshold the janky frame fraction above which the level is stepped down
+     */
+    public void setJankThresholds(float lowThreshold, float highThreshold) {
+        if (lowThreshold < 0 || highThreshold < lowThreshold || highThreshold > 1) {
+            throw new IllegalArgumentException("Jank thresholds must be between 0 and 1 and the high threshold must not be below the low threshold");
+        }
+
+        mJankLowThreshold = lowThreshold;
+        mJankHighThreshold = highThreshold;
+    }
+
+    /**
+     * Sets how long pressure must stay below the current level before the governor recovers by
+     * one level. Degrading is never delayed.
+     *
+     * @param recoveryDelayMs the recovery delay in milliseconds
+     */
+    public void setRecoveryDelay(long recoveryDelayMs) {
+        if (recoveryDelayMs < 0) {
+            throw new IllegalArgumentException("Recovery delay must not be negative");
+        }
+
+        mRecoveryDelayNanos = recoveryDelayMs * 1000000L;
+    }
+
+    /**
+     * Determines the sampling period the sensor is slowed to from
+     * {@link #LEVEL_REDUCED_SAMPLING} on.
+     *
+     * @return the reduced sampling period rate
+     */
+    public int getReducedSamplingPeriodUs() {
+        return mReducedSamplingPeriodUs;
+    }
+
+    /**
+     * Sets the sampling period the sensor is slowed to from {@link #LEVEL_REDUCED_SAMPLING}
+     * on. Registrations that already sample more slowly are left as they are.
+     *
+     * @param reducedSamplingPeriodUs the reduced sensor sampling period rate
+     */
+    public void setReducedSamplingPeriodUs(int reducedSamplingPeriodUs) {
+        mReducedSamplingPeriodUs = reducedSamplingPeriodUs;
+    }
+
+    /**
+     * Determines the minimum time between applied translations from
+     * {@link #LEVEL_COARSE_UPDATES} on.
+     *
+     * @return the coarse update interval in nanoseconds
+     */
+    public long getCoarseUpdateIntervalNanos() {
+        return mCoarseUpdateIntervalNanos;
+    }
+
+    /**
+     * Sets the minimum time between applied translations from {@link #LEVEL_COARSE_UPDATES} on.
+     *
+     * @param coarseUpdateIntervalMs the coarse update interval in milliseconds
+     */
+    public void setCoarseUpdateInterval(long coarseUpdateIntervalMs) {
+        if (coarseUpdateIntervalMs <= 0) {
+            throw new IllegalArgumentException("Coarse update interval must be positive");
+        }
+
+        mCoarseUpdateIntervalNanos = coarseUpdateIntervalMs * 1000000L;
+    }
+
+    /**
+     * Feeds the current battery temperature to the governor.
+     *
+     * @param celsius   the battery temperature in degrees Celsius
+     * @param timeNanos the current monotonic time in nanoseconds
+     */
+    void onBatteryTemperature(float celsius, long timeNanos) {
+        if (celsius >= mFrozenTemperature) {
+            mThermalLevel = LEVEL_FROZEN;
+        } else if (celsius >= mCoarseUpdatesTemperature) {
+            mThermalLevel = LEVEL_COARSE_UPDATES;
+        } else if (celsius >= mReducedSamplingTemperature) {
+            mThermalLevel = LEVEL_REDUCED_SAMPLING;
+        } else {
+            mThermalLevel = LEVEL_FULL;
+        }
+        update(timeNanos);
+    }
+
+    /**
+     * Feeds the current battery saver mode to the governor.
+     *
+     * @param powerSaveMode true if battery saver mode is on
+     * @param timeNanos     the current monotonic time in nanoseconds
+     */
+    void onPowerSaveModeChanged(boolean powerSaveMode, long timeNanos) {
+        mPowerSaveMode = powerSaveMode;
+        update(timeNanos);
+    }
+
+    /**
+     * Feeds the frame counts of an evaluation window to the governor. Jank that persists for
+     * a whole window at the current level steps the level down by one, so that each step has
+     * a window to take effect before the next. Jank alone degrades the effect no further
+     * than {@link #LEVEL_COARSE_UPDATES}.
+     *
+     * @param frames      the number of frames in the window
+     * @param jankyFrames the number of those frames that missed their vsync deadline
+     * @param timeNanos   the current monotonic time in nanoseconds
+     */
+    void onFrameWindow(int frames, int jankyFrames, long timeNanos) {
+        final boolean levelChanged = mLevelChangedInWindow;
+        mLevelChangedInWindow = false;
+
+        if (frames > 0) {
+            final float jankRatio = (float) jankyFrames / frames;
+            if (jankRatio > mJankHighThreshold) {
+                // Frames from before the last level change do not reflect the current level
+                if (!levelChanged && mLevel < MAX_JANK_LEVEL) {
+                    mJankLevel = mLevel + 1;
+                }
+            } else if (jankRatio < mJankLowThreshold) {
+                mJankLevel = LEVEL_FULL;
+            }
+        }
+        update(timeNanos);
+    }
+
+    /**
+     * Moves the level towards the level demanded by the pressure inputs. Degrades immediately,
+     * and recovers one level at a time, each after the pressure has stayed below the current
+     * level for the recovery delay.
+     *
+     * @param timeNanos the current monotonic time in nanoseconds
+     */
+    void update(long timeNanos) {
+        final int level = mLevel;
+        int target = Math.max(mThermalLevel, mJankLevel);
+        if (mPowerSaveMode) {
+            target = Math.max(target, mPowerSaveLevel);
+        }
+
+        if (target > level) {
+            mRecovering = false;
+            setLevel(target);
+        } else if (target < level) {
+            if (!mRecovering) {
+                mRecovering = true;
+                mRecoveringSince = timeNanos;
+            } else if (timeNanos - mRecoveringSince >= mRecoveryDelayNanos) {
+                mRecoveringSince = timeNanos;
+                setLevel(level - 1);
+            }
+        } else {
+            mRecovering = false;
+        }
+    }
+
+    /**
+     * Changes the level and notifies the listeners.
+     *
+     * @param level the new level
+     */
+    private void setLevel(int level) {
+        final int previousLevel = mLevel;
+        mLevel = level;
+        mLevelChangedInWindow = true;
+        updateFrameMonitor();
+
+        final int pressure = getPressure();
+        for (int i = mListeners.size() - 1; i >= 0; i--) {
+            mListeners.get(i).onLevelChanged(previousLevel, level, pressure);
+        }
+    }
+
+    /**
+     * Hands the frame counts of the last window to the governor and re-evaluates the level,
+     * so that recovery proceeds even while no other pressure changes.
+     */
+    private void evaluate() {
+        final long now = System.nanoTime();
+        if (mFrameMonitor != null && mFrameMonitor.isRunning()) {
+            onFrameWindow(mWindowFrames, mWindowJankyFrames, now);
+            mWindowFrames = 0;
+            mWindowJankyFrames = 0;
+        } else {
+            update(now);
+        }
+    }
+
+    /**
+     * Runs the frame monitor while the governor is started and the effect is drawing and not
+     * frozen, as an effect that draws nothing causes no jank and frame timings would only
+     * cost a callback per vsync.
+     */
+    private void updateFrameMonitor() {
+        if (mFrameMonitor == null) return;
+
+        final boolean running = mStartCount > 0 && mLevel != LEVEL_FROZEN && mEffectDrawing;
+        if (running == mFrameMonitor.isRunning()) return;
+
+        if (running) {
+            mWindowFrames = 0;
+            mWindowJankyFrames = 0;
+            mLevelChangedInWindow = true;
+            mFrameMonitor.start();
+        } else {
+            mFrameMonitor.stop();
+        }
+    }
+
+    /**
+     * Handles a battery or battery saver mode broadcast.
+     *
+     * @param intent the broadcast intent
+     */
+    private void onPressureIntent(Intent intent) {
+        final long now = System.nanoTime();
+        if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+            // Reported in tenths of a degree Celsius
+            final int temperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+            if (temperature != Integer.MIN_VALUE) {
+                onBatteryTemperature(temperature / 10f, now);
+            }
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            onPowerSaveModeChanged(isPowerSaveMode(), now);
+        }
+    }
+
+    /**
+     * Adds the battery saver mode broadcast to the filter.
+     *
+     * @param filter the filter to add the action to
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void addPowerSaveModeAction(IntentFilter filter) {
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+    }
+
+    /**
+     * Determines if the device is in battery saver mode.
+     *
+     * @return true if battery saver mode is on
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean isPowerSaveMode() {
+        final PowerManager powerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
+    }
+
+    /**
+     * Counts frames and janky frames from the intervals between vsync callbacks.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameMonitor implements Choreographer.FrameCallback {
+
+        private final long mJankThresholdNanos;
+        private long mLastFrameTimeNanos;
+        private boolean mRunning;
+
+        /**
+         * Creates a monitor for a display of the given refresh rate.
+         *
+         * @param refreshRate the display refresh rate in frames per second
+         */
+        FrameMonitor(float refreshRate) {
+            mJankThresholdNanos = (long) (JANK_FRAME_FACTOR * 1e9f / refreshRate);
+        }
+
+        /**
+         * Starts counting from the next frame.
+         */
+        void start() {
+            mLastFrameTimeNanos = 0;
+            mRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /**
+         * Stops counting.
+         */
+        void stop() {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        /**
+         * Determines if frames are being counted.
+         *
+         * @return true between {@link #start()} and {@link #stop()}
+         */
+        boolean isRunning() {
+            return mRunning;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRunning) return;
+
+            if (mLastFrameTimeNanos != 0) {
+                mWindowFrames++;
+                if (frameTimeNanos - mLastFrameTimeNanos > mJankThresholdNanos) {
+                    mWindowJankyFrames++;
+                }
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+
+            // Stop once the effect has stopped drawing, until its next frame
+            if (frameTimeNanos - mLastEffectFrameNanos
+                    > Math.max(FRAME_MONITOR_IDLE_NANOS, 2 * mCoarseUpdateIntervalNanos)) {
+                mEffectDrawing = false;
+                updateFrameMonitor();
+                return;
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+    }
+
+}
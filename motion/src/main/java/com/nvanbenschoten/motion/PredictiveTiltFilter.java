@@ -0,0 +1,178 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.Nullable;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class PredictiveTiltFilter implements TiltFilter {
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    /**
+     * The cutoff frequency in Hz used to smooth the estimated tilt velocity, keeping sensor
+     * noise from being amplified by the extrapolation.
+     */
+    private static final float VELOCITY_CUTOFF = 8f;
+
+    /**
+     * Samples further apart than this carry no useful velocity, for instance after the sensor
+     * was paused, so the velocity estimate restarts from rest.
+     */
+    private static final float MAX_SAMPLE_INTERVAL = 0.1f;
+
+    /**
+     * An optional filter applied before prediction, typically to smooth the tilt.
+     */
+    private final TiltFilter mUpstreamFilter;
+
+    /**
+     * How far ahead of the sensor timestamp the tilt is extrapolated, in seconds.
+     */
+    private final float mHorizon;
+
+    /**
+     * The largest distance the prediction may move tilt away from the measured value.
+     */
+    private final float mMaxLead;
+
+    /**
+     * The time constant used to smooth the velocity estimate, in seconds.
+     */
+    private final float mVelocityTimeConstant;
+
+    // Filter state, sized on first use.
+    private float[] mLastTilt;
+    private float[] mVelocity;
+    private long mLastTimestamp;
+    private boolean mInitialized = false;
+
+    /**
+     * Creates a predictive filter extrapolating 32ms ahead, about one sensor period at
+     * SENSOR_DELAY_GAME plus one frame, by at most 0.05 of the tilt range.
+     */
+    public PredictiveTiltFilter() {
+        this(null, 32, 0.05f);
+    }
+
+    /**
+     * Creates a predictive filter.
+     *
+     * @param horizonMs the time in milliseconds to extrapolate tilt ahead of its sensor
+     *                  timestamp, usually the sensor period plus the time until the next
+     *                  frame is presented
+     * @param maxLead   the largest distance, in the tilt range of -1 to 1, that prediction
+     *                  may move tilt away from the measured value
+     */
+    public PredictiveTiltFilter(float horizonMs, float maxLead) {
+        this(null, horizonMs, maxLead);
+    }
+
+    /**
+     * Creates a predictive filter that extrapolates the output of another filter. Smoothing
+     * before predicting keeps the velocity estimate stable.
+     *
+     * @param upstreamFilter the filter to apply before prediction, or null
+     * @param horizonMs      the time in milliseconds to extrapolate tilt ahead of its sensor
+     *                       timestamp
+     * @param maxLead        the largest distance, in the tilt range of -1 to 1, that prediction
+     *                       may move tilt away from the measured value
+     */
+    public PredictiveTiltFilter(@Nullable TiltFilter upstreamFilter, float horizonMs, float maxLead) {
+        if (horizonMs < 0) {
+            throw new IllegalArgumentException("Horizon must not be negative");
+        }
+        if (maxLead < 0) {
+            throw new IllegalArgumentException("Maximum lead must not be negative");
+        }
+
+        mUpstreamFilter = upstreamFilter;
+        mHorizon = horizonMs / 1000f;
+        mMaxLead = maxLead;
+        mVelocityTimeConstant = (float) (1 / (2 * Math.PI * VELOCITY_CUTOFF));
+    }
+
+    @Override
+    public void filter(float[] tilt, long timestamp) {
+        if (mUpstreamFilter != null) {
+            mUpstreamFilter.filter(tilt, timestamp);
+        }
+
+        if (mLastTilt == null) {
+            mLastTilt = new float[tilt.length];
+            mVelocity = new float[tilt.length];
+        }
+
+        if (!mInitialized) {
+            System.arraycopy(tilt, 0, mLastTilt, 0, tilt.length);
+            for (int i = 0; i < tilt.length; i++) {
+                mVelocity[i] = 0;
+            }
+            mLastTimestamp = timestamp;
+            mInitialized = true;
+            return;
+        }
+
+        // Duplicate or out of order events carry no timing information, so they keep the
+        // previous velocity estimate
+        final float dt = (timestamp - mLastTimestamp) / NANOS_PER_SECOND;
+        if (dt > 0) {
+            mLastTimestamp = timestamp;
+            final float alpha = dt / (mVelocityTimeConstant + dt);
+
+            for (int i = 0; i < tilt.length; i++) {
+                final float velocity = (tilt[i] - mLastTilt[i]) / dt;
+                if (dt > MAX_SAMPLE_INTERVAL) {
+                    mVelocity[i] = 0;
+                } else {
+                    mVelocity[i] += alpha * (velocity - mVelocity[i]);
+                }
+                mLastTilt[i] = tilt[i];
+            }
+        } else {
+            System.arraycopy(tilt, 0, mLastTilt, 0, tilt.length);
+        }
+
+        for (int i = 0; i < tilt.length; i++) {
+            // Extrapolate, clamping so the prediction cannot overshoot far past the measurement
+            float lead = mVelocity[i] * mHorizon;
+            if (lead > mMaxLead) {
+                lead = mMaxLead;
+            } else if (lead < -mMaxLead) {
+                lead = -mMaxLead;
+            }
+
+            // Keep predicted tilt within image bounds
+            final float predicted = mLastTilt[i] + lead;
+            if (predicted > 1) {
+                tilt[i] = 1f;
+            } else if (predicted < -1) {
+                tilt[i] = -1f;
+            } else {
+                tilt[i] = predicted;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (mUpstreamFilter != null) {
+            mUpstreamFilter.reset();
+        }
+
+        mInitialized = false;
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.NonNull;
+import android.view.Surface;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class QuaternionTilt {
+
+    /**
+     * Screen rotation axis swaps, indexed by {@link Surface} rotation. Column j of the oriented
+     * rotation difference matrix equals column SOURCE_COLUMN[rotation][j] of the unoriented one,
+     * multiplied by COLUMN_SIGN[rotation][j]. These match the remappings performed by
+     * {@link android.hardware.SensorManager#remapCoordinateSystem} in the matrix pipeline.
+     */
+    private static final int[][] SOURCE_COLUMN = {
+            {0, 1, 2},
+            {1, 0, 2},
+            {0, 1, 2},
+            {1, 0, 2},
+    };
+    private static final float[][] COLUMN_SIGN = {
+            {1, 1, 1},
+            {-1, 1, 1},
+            {-1, -1, 1},
+            {1, -1, 1},
+    };
+
+    /**
+     * Deviations from unit length below this are float rounding, and are not worth correcting.
+     */
+    private static final float NON_UNIT_EPSILON = 1e-5f;
+
+    // Target quaternion components and its deviation from unit length.
+    private float mTargetW;
+    private float mTargetX;
+    private float mTargetY;
+    private float mTargetZ;
+    private float mTargetNonUnit;
+
+    // Current and relative quaternion components, reused between calls.
+    private float mCurrentW;
+    private float mCurrentX;
+    private float mCurrentY;
+    private float mCurrentZ;
+    private float mCurrentNonUnit;
+    private float mDeltaW;
+    private float mDeltaX;
+    private float mDeltaY;
+    private float mDeltaZ;
+    private boolean mNonUnit;
+
+    /**
+     * Sets the target rotation to calculate angle deltas from.
+     *
+     * @param rotationVector a rotation vector (presumably from a ROTATION_VECTOR sensor)
+     */
+    void setTarget(@NonNull float[] rotationVector) {
+        mTargetX = rotationVector[0];
+        mTargetY = rotationVector[1];
+        mTargetZ = rotationVector[2];
+        mTargetW = getScalar(rotationVector);
+        mTargetNonUnit = 1 - (mTargetW * mTargetW + mTargetX * mTargetX + mTargetY * mTargetY + mTargetZ * mTargetZ);
+    }
+
+    /**
+     * Computes the yaw, pitch, and roll angle change from the target to the given rotation
+     * vector, in radians. Produces the same values as
+     * {@link android.hardware.SensorManager#getAngleChange} applied to the rotation matrices
+     * of both vectors, after remapping the current one for the screen rotation.
+     *
+     * @param angleChange    the array to write yaw, pitch, and roll into. Axes not requested
+     *                       are set to 0
+     * @param rotationVector the current rotation vector
+     * @param rotation       the screen rotation, one of the {@link Surface} rotation constants
+     * @param axes           the axes to compute, a combination of the SensorInterpreter TILT_
+     *                       flags
+     */
+    void getAngleChange(@NonNull float[] angleChange, @NonNull float[] rotationVector, int rotation, int axes) {
+        mCurrentX = rotationVector[0];
+        mCurrentY = rotationVector[1];
+        mCurrentZ = rotationVector[2];
+        mCurrentW = getScalar(rotationVector);
+        mCurrentNonUnit = 1 - (mCurrentW * mCurrentW + mCurrentX * mCurrentX + mCurrentY * mCurrentY + mCurrentZ * mCurrentZ);
+
+        // Relative rotation from the target to the current orientation: conj(target) * current
+        mDeltaW = mTargetW * mCurrentW + mTargetX * mCurrentX + mTargetY * mCurrentY + mTargetZ * mCurrentZ;
+        mDeltaX = mTargetW * mCurrentX - mTargetX * mCurrentW - mTargetY * mCurrentZ + mTargetZ * mCurrentY;
+        mDeltaY = mTargetW * mCurrentY + mTargetX * mCurrentZ - mTargetY * mCurrentW - mTargetZ * mCurrentX;
+        mDeltaZ = mTargetW * mCurrentZ - mTargetX * mCurrentY + mTargetY * mCurrentX - mTargetZ * mCurrentW;
+        mNonUnit = Math.abs(mTargetNonUnit) > NON_UNIT_EPSILON || Math.abs(mCurrentNonUnit) > NON_UNIT_EPSILON;
+
+        final int[] sourceColumn = SOURCE_COLUMN[rotation & 0x3];
+        final float[] columnSign = COLUMN_SIGN[rotation & 0x3];
+
+        if ((axes & SensorInterpreter.TILT_YAW) != 0) {
+            final float rd01 = columnSign[1] * getDifference(0, sourceColumn[1]);
+            final float rd11 = columnSign[1] * getDifference(1, sourceColumn[1]);
+            angleChange[0] = (float) Math.atan2(rd01, rd11);
+        } else {
+            angleChange[0] = 0;
+        }
+
+        if ((axes & SensorInterpreter.TILT_PITCH) != 0) {
+            final float rd21 = columnSign[1] * getDifference(2, sourceColumn[1]);
+            angleChange[1] = (float) Math.asin(-rd21);
+        } else {
+            angleChange[1] = 0;
+        }
+
+        if ((axes & SensorInterpreter.TILT_ROLL) != 0) {
+            final float rd20 = columnSign[0] * getDifference(2, sourceColumn[0]);
+            final float rd22 = columnSign[2] * getDifference(2, sourceColumn[2]);
+            angleChange[2] = (float) Math.atan2(-rd20, rd22);
+        } else {
+            angleChange[2] = 0;
+        }
+    }
+
+    /**
+     * Computes one element of the rotation difference matrix transpose(target) * current.
+     * For unit quaternions this is just the element of the relative rotation. Rotation
+     * vectors that do not describe unit quaternions produce rotation matrices offset by a
+     * multiple of the identity, which is corrected for here so that results match the
+     * matrix pipeline for any input.
+     *
+     * @param row    the matrix row
+     * @param column the matrix column
+     * @return the matrix element
+     */
+    private float getDifference(int row, int column) {
+        float value = getHomogeneousElement(mDeltaW, mDeltaX, mDeltaY, mDeltaZ, row, column);
+
+        if (mNonUnit) {
+            // The conjugated target's matrix is the transpose of the target's matrix
+            value += mCurrentNonUnit * getHomogeneousElement(mTargetW, mTargetX, mTargetY, mTargetZ, column, row);
+            value += mTargetNonUnit * getHomogeneousElement(mCurrentW, mCurrentX, mCurrentY, mCurrentZ, row, column);
+            if (row == column) {
+                value += mTargetNonUnit * mCurrentNonUnit;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Computes one element of the homogeneous rotation matrix of a quaternion, which is
+     * scaled by the quaternion's squared length.
+     */
+    private static float getHomogeneousElement(float w, float x, float y, float z, int row, int column) {
+        switch (row * 3 + column) {
+            case 0: return w * w + x * x - y * y - z * z;
+            case 1: return 2 * (x * y - w * z);
+            case 2: return 2 * (x * z + w * y);
+            case 3: return 2 * (x * y + w * z);
+            case 4: return w * w - x * x + y * y - z * z;
+            case 5: return 2 * (y * z - w * x);
+            case 6: return 2 * (x * z - w * y);
+            case 7: return 2 * (y * z + w * x);
+            default: return w * w - x * x - y * y + z * z;
+        }
+    }
+
+    /**
+     * Determines the scalar component of a rotation vector's quaternion the same way
+     * {@link android.hardware.SensorManager#getRotationMatrixFromVector} does.
+     */
+    private static float getScalar(float[] rotationVector) {
+        if (rotationVector.length >= 4) {
+            return rotationVector[3];
+        }
+
+        final float w = 1 - rotationVector[0] * rotationVector[0]
+                - rotationVector[1] * rotationVector[1]
+                - rotationVector[2] * rotationVector[2];
+        return (w > 0) ? (float) Math.sqrt(w) : 0;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class RotationVectorMotionSource extends MotionSource {
+
+    private final int mSensorType;
+
+    /**
+     * Creates a source passing through the events of a rotation vector sensor.
+     *
+     * @param sensorType the sensor type, either TYPE_ROTATION_VECTOR or TYPE_GAME_ROTATION_VECTOR
+     */
+    RotationVectorMotionSource(int sensorType) {
+        mSensorType = sensorType;
+    }
+
+    @Override
+    public int getSensorType() {
+        return mSensorType;
+    }
+
+    @NonNull
+    @Override
+    public float[] getRotationVector(@NonNull SensorEvent event) {
+        return event.values;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorManager;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+final class SamplingPeriods {
+
+    private SamplingPeriods() { }
+
+    /**
+     * Converts a sampling period, which may be one of the {@link SensorManager} SENSOR_DELAY_
+     * constants, into microseconds.
+     *
+     * @param samplingPeriodUs the sensor sampling period rate
+     * @return the sampling period in microseconds
+     */
+    static int toMicroseconds(int samplingPeriodUs) {
+        switch (samplingPeriodUs) {
+            case SensorManager.SENSOR_DELAY_FASTEST:
+                return 0;
+            case SensorManager.SENSOR_DELAY_GAME:
+                return 20000;
+            case SensorManager.SENSOR_DELAY_UI:
+                return 66667;
+            case SensorManager.SENSOR_DELAY_NORMAL:
+                return 200000;
+            default:
+                return samplingPeriodUs;
+        }
+    }
+
+    /**
+     * Determines if a sampling period samples more often than another.
+     *
+     * @param samplingPeriodUs a sensor sampling period rate
+     * @param otherPeriodUs    another sensor sampling period rate
+     * @return true if the first samples strictly more often than the second
+     */
+    static boolean isFaster(int samplingPeriodUs, int otherPeriodUs) {
+        return toMicroseconds(samplingPeriodUs) < toMicroseconds(otherPeriodUs);
+    }
+
+    /**
+     * Picks the slower of two sampling periods.
+     *
+     * @param first  a sensor sampling period rate
+     * @param second another sensor sampling period rate
+     * @return whichever of the two samples less often
+     */
+    static int slower(int first, int second) {
+        return isFaster(first, second) ? second : first;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class SensorEventBatch {
+
+    /**
+     * The number of rotation vector values stored per sample.
+     */
+    private static final int STRIDE = 4;
+
+    private final float[] mRotationVectors;
+    private final long[] mTimestamps;
+    private final float[] mTilts;
+    private final long[] mTiltTimestamps;
+    private int mCount;
+
+    /**
+     * Creates a batch able to hold the given number of sensor events between drains.
+     *
+     * @param capacity the maximum number of buffered events
+     */
+    SensorEventBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        mRotationVectors = new float[capacity * STRIDE];
+        mTimestamps = new long[capacity];
+        mTilts = new float[capacity * 3];
+        mTiltTimestamps = new long[capacity];
+    }
+
+    /**
+     * Copies a rotation vector and its timestamp into the batch. Rotation vectors with three
+     * values are completed with their derived scalar component.
+     *
+     * @param values    the rotation vector to buffer, with at least three values
+     * @param timestamp the timestamp of the rotation vector in nanoseconds
+     * @return true if the batch is now full and should be drained
+     */
+    boolean add(@NonNull float[] values, long timestamp) {
+        final int offset = mCount * STRIDE;
+        if (values.length >= STRIDE) {
+            System.arraycopy(values, 0, mRotationVectors, offset, STRIDE);
+        } else {
+            // Derive the scalar component the way SensorManager does for 3 value vectors
+            System.arraycopy(values, 0, mRotationVectors, offset, 3);
+            final float w = 1 - values[0] * values[0] - values[1] * values[1] - values[2] * values[2];
+            mRotationVectors[offset + 3] = (w > 0) ? (float) Math.sqrt(w) : 0;
+        }
+
+        mTimestamps[mCount] = timestamp;
+        mCount++;
+        return mCount == mTimestamps.length;
+    }
+
+    /**
+     * Interprets the buffered events, keeping only the newest event per frame interval, and
+     * empties the batch. Results are available through {@link #getTilts()} and
+     * {@link #getTiltTimestamps()} until the next call.
+     *
+     * @param interpreter        the interpreter to run the events through
+     * @param rotation           the screen rotation, one of the Surface rotation constants
+     * @param frameIntervalNanos the frame interval in nanoseconds
+     * @param axes               the axes to compute, a combination of the TILT_ flags
+     * @return the number of interpreted samples
+     */
+    int interpret(@NonNull SensorInterpreter interpreter, int rotation, long frameIntervalNanos, int axes) {
+        final int interpreted = interpreter.interpretRotationVectors(rotation, mRotationVectors,
+                STRIDE, mTimestamps, mCount, frameIntervalNanos, axes, mTilts, mTiltTimestamps);
+        mCount = 0;
+        return interpreted;
+    }
+
+    /**
+     * Retrieves the yaw, pitch, and roll values written by the last interpretation, three
+     * values per sample.
+     *
+     * @return the interpreted tilts
+     */
+    float[] getTilts() {
+        return mTilts;
+    }
+
+    /**
+     * Retrieves the timestamps of the samples written by the last interpretation.
+     *
+     * @return the interpreted sample timestamps
+     */
+    long[] getTiltTimestamps() {
+        return mTiltTimestamps;
+    }
+
+}
@@ -5,7 +5,6 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.annotation.VisibleForTesting;
 import android.view.Surface;
 import android.view.WindowManager;
 
@@ -33,16 +32,36 @@ class SensorInterpreter {
 
     private static final String TAG = SensorInterpreter.class.getName();
 
+    /**
+     * Flags selecting which tilt axes to compute.
+     */
+    public static final int TILT_YAW = 1;
+    public static final int TILT_PITCH = 1 << 1;
+    public static final int TILT_ROLL = 1 << 2;
+    public static final int TILT_ALL = TILT_YAW | TILT_PITCH | TILT_ROLL;
+
     /**
      * The standardized tilt vector corresponding to yaw, pitch, and roll deltas from target matrix.
      */
     private float[] mTiltVector = new float[3];
 
     /**
-     * Whether the SensorInterpreter has set a target to calculate tilt offset from.
+     * Whether the SensorInterpreter has set a target to calculate tilt offset from. Only
+     * accessed by the thread interpreting events.
      */
     private boolean mTargeted = false;
 
+    /**
+     * Whether {@link #reset()} was called since the interpreting thread last checked, so the
+     * target can be cleared from any thread without racing with the interpretation.
+     */
+    private volatile boolean mResetRequested = false;
+
+    /**
+     * The most recent tilt interpreted from a timestamped event, for other threads to read.
+     */
+    private final TiltState mTiltState = new TiltState();
+
     /**
      * The target rotation matrix to calculate tilt offset from.
      */
@@ -59,26 +78,121 @@ class SensorInterpreter {
      */
     private float[] mTruncatedRotationVector;
 
+    /**
+     * Holds one rotation vector of a batch during interpretation.
+     */
+    private float[] mBatchRotationVector;
+
     /**
      * The sensitivity the parallax effect has towards tilting.
      */
-    private float mTiltSensitivity = 2.0f;
+    private volatile float mTiltSensitivity = 2.0f;
+
+    /**
+     * If tilt should be computed directly from rotation vector quaternions (true) or through
+     * rotation matrices (false).
+     */
+    private volatile boolean mQuaternionEngineEnabled = false;
+    private QuaternionTilt mQuaternionTilt = new QuaternionTilt();
+
+    /**
+     * Converts events of sensors other than the rotation vector, or null to interpret events
+     * as rotation vectors directly.
+     */
+    private volatile MotionSource mMotionSource;
+
+    /**
+     * Receives event counts and interpretation times, or null to skip measuring them.
+     */
+    private volatile ParallaxMetrics mMetrics;
 
     /**
-     * Converts sensor data in a {@link SensorEvent} to yaw, pitch, and roll.
+     * Converts sensor data in a {@link SensorEvent} to yaw, pitch, and roll. Queries the
+     * screen rotation from the {@link WindowManager} on every call, prefer
+     * {@link #interpretSensorEvent(int, SensorEvent)} with a cached rotation on hot paths.
      *
      * @param context the context of the
      * @param event   the event to interpret
      * @return an interpreted vector of yaw, pitch, and roll delta values
      */
-    @SuppressWarnings("SuspiciousNameCombination")
     public float[] interpretSensorEvent(@NonNull Context context, @Nullable SensorEvent event) {
         if (event == null) {
             return null;
         }
 
+        // Acquire rotation of screen
+        final int rotation = ((WindowManager) context
+                .getSystemService(Context.WINDOW_SERVICE))
+                .getDefaultDisplay()
+                .getRotation();
+
+        return interpretSensorEvent(rotation, event);
+    }
+
+    /**
+     * Converts sensor data in a {@link SensorEvent} to yaw, pitch, and roll, given the current
+     * screen rotation. Requires no {@link Context}, so it can be called from any thread.
+     *
+     * @param rotation the screen rotation, one of the {@link Surface} rotation constants
+     * @param event    the event to interpret
+     * @return an interpreted vector of yaw, pitch, and roll delta values
+     */
+    public float[] interpretSensorEvent(int rotation, @Nullable SensorEvent event) {
+        return interpretSensorEvent(rotation, event, TILT_ALL);
+    }
+
+    /**
+     * Converts sensor data in a {@link SensorEvent} to the requested subset of yaw, pitch,
+     * and roll, given the current screen rotation. The quaternion engine only computes the
+     * requested axes, while the matrix engine always computes all three.
+     *
+     * @param rotation the screen rotation, one of the {@link Surface} rotation constants
+     * @param event    the event to interpret
+     * @param axes     the axes to compute, a combination of the TILT_ flags
+     * @return an interpreted vector of yaw, pitch, and roll delta values. Axes that were not
+     * requested may be 0. The array is reused by the next interpretation, so other threads
+     * should read the published {@link #getTiltState()} instead
+     */
+    public float[] interpretSensorEvent(int rotation, @Nullable SensorEvent event, int axes) {
+        final ParallaxMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.recordEventsReceived(1);
+        }
+
+        if (event == null) {
+            if (metrics != null) {
+                metrics.recordInterpretation(0, true);
+            }
+            return null;
+        }
+
         // Retrieves the RotationVector from SensorEvent
-        float[] rotationVector = getRotationVectorFromSensorEvent(event);
+        final float[] rotationVector = getRotationVectorFromSensorEvent(event);
+        final long start = (metrics != null) ? System.nanoTime() : 0;
+        final float[] tilt = interpretRotationVector(rotation, rotationVector, axes);
+        if (metrics != null) {
+            metrics.recordInterpretation(System.nanoTime() - start, tilt == null);
+        }
+
+        if (tilt != null) {
+            mTiltState.publish(tilt, event.timestamp);
+        }
+        return tilt;
+    }
+
+    /**
+     * Converts a rotation vector to the requested subset of yaw, pitch, and roll, given the
+     * current screen rotation. Allows sensor data that did not arrive in a {@link SensorEvent}
+     * to be interpreted.
+     *
+     * @param rotation       the screen rotation, one of the {@link Surface} rotation constants
+     * @param rotationVector the rotation vector to interpret, with three or four values
+     * @param axes           the axes to compute, a combination of the TILT_ flags
+     * @return an interpreted vector of yaw, pitch, and roll delta values, or null if the rotation
+     * vector was used to set the target. Axes that were not requested may be 0
+     */
+    public float[] interpretRotationVector(int rotation, @NonNull float[] rotationVector, int axes) {
+        consumeResetRequest();
 
         // Set target rotation if none has been set
         if (!mTargeted) {
@@ -86,15 +200,120 @@ class SensorInterpreter {
             return null;
         }
 
+        // Calculate angle differential between target and current orientation
+        if (mQuaternionEngineEnabled) {
+            mQuaternionTilt.getAngleChange(mTiltVector, rotationVector, rotation, axes);
+        } else {
+            getAngleChangeFromMatrices(rotationVector, rotation);
+        }
+
+        // Perform value scaling and clamping on value array
+        final float tiltSensitivity = mTiltSensitivity;
+        for (int i = 0; i < mTiltVector.length; i++) {
+            // Map domain of tilt vector from radian (-PI, PI) to fraction (-1, 1)
+            mTiltVector[i] /= Math.PI;
+
+            // Adjust for tilt sensitivity
+            mTiltVector[i] *= tiltSensitivity;
+
+            // Clamp values to image bounds
+            if (mTiltVector[i] > 1) {
+                mTiltVector[i] = 1f;
+            } else if (mTiltVector[i] < -1) {
+                mTiltVector[i] = -1f;
+            }
+        }
+
+        return mTiltVector;
+    }
+
+    /**
+     * Interprets a burst of rotation vectors, such as a batch flushed by the sensor hub, in one
+     * pass. Only the newest sample within each frame interval is interpreted and written out,
+     * since older samples in the same frame would never be drawn. Samples are bucketed by
+     * their timestamp divided by the frame interval. If no target has been set, the first
+     * sample sets it and is not written out.
+     *
+     * @param rotation           the screen rotation, one of the {@link Surface} rotation constants
+     * @param rotationVectors    the rotation vectors, packed with {@code stride} values each
+     * @param stride             the number of values per rotation vector, at least 3. Values
+     *                           past the fourth are ignored
+     * @param timestamps         the timestamp of each sample in nanoseconds, in ascending order
+     * @param count              the number of samples in the burst
+     * @param frameIntervalNanos the frame interval in nanoseconds, or 0 to only interpret the
+     *                           newest sample of the burst
+     * @param axes               the axes to compute, a combination of the TILT_ flags
+     * @param outTilts           receives yaw, pitch, and roll for each interpreted sample, three
+     *                           values per sample. Must hold at least {@code 3 * count} values
+     * @param outTimestamps      receives the timestamp of each interpreted sample. Must hold at
+     *                           least {@code count} values
+     * @return the number of interpreted samples written out
+     */
+    public int interpretRotationVectors(int rotation, @NonNull float[] rotationVectors, int stride,
+                                        @NonNull long[] timestamps, int count,
+                                        long frameIntervalNanos, int axes,
+                                        @NonNull float[] outTilts, @NonNull long[] outTimestamps) {
+        if (stride < 3) {
+            throw new IllegalArgumentException("Rotation vectors must have at least 3 values");
+        }
+        if (frameIntervalNanos < 0) {
+            throw new IllegalArgumentException("Frame interval must not be negative");
+        }
+
+        // Reuse a scratch vector of the interpreted length, capped as in getRotationVectorFromSensorEvent
+        final int length = Math.min(stride, 4);
+        if (mBatchRotationVector == null || mBatchRotationVector.length != length) {
+            mBatchRotationVector = new float[length];
+        }
+
+        final ParallaxMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.recordEventsReceived(count);
+        }
+
+        consumeResetRequest();
+
+        int written = 0;
+        for (int i = 0; i < count; i++) {
+            // Skip samples superseded by a newer one in the same frame, but always use the
+            // first sample of the burst to set a missing target
+            final boolean last = (i == count - 1);
+            if (mTargeted && !last && (frameIntervalNanos == 0
+                    || timestamps[i] / frameIntervalNanos == timestamps[i + 1] / frameIntervalNanos)) {
+                continue;
+            }
+
+            System.arraycopy(rotationVectors, i * stride, mBatchRotationVector, 0, length);
+            final long start = (metrics != null) ? System.nanoTime() : 0;
+            final float[] tilt = interpretRotationVector(rotation, mBatchRotationVector, axes);
+            if (metrics != null) {
+                metrics.recordInterpretation(System.nanoTime() - start, tilt == null);
+            }
+            if (tilt == null) continue;
+
+            System.arraycopy(tilt, 0, outTilts, written * 3, 3);
+            outTimestamps[written] = timestamps[i];
+            written++;
+        }
+
+        if (written > 0) {
+            mTiltState.publish(mTiltVector, outTimestamps[written - 1]);
+        }
+        return written;
+    }
+
+    /**
+     * Computes the yaw, pitch, and roll angle change from the target into the tilt vector by
+     * building and remapping full rotation matrices.
+     *
+     * @param rotationVector the current rotation vector
+     * @param rotation       the screen rotation, one of the {@link Surface} rotation constants
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    private void getAngleChangeFromMatrices(float[] rotationVector, int rotation) {
         // Get rotation matrix from event's values
         SensorManager.getRotationMatrixFromVector(mRotationMatrix, rotationVector);
 
-        // Acquire rotation of screen
-        final int rotation = ((WindowManager) context
-                .getSystemService(Context.WINDOW_SERVICE))
-                .getDefaultDisplay()
-                .getRotation();
-
         // Calculate angle differential between target and current orientation
         if (rotation == Surface.ROTATION_0) {
             SensorManager.getAngleChange(mTiltVector, mRotationMatrix, mTargetMatrix);
@@ -116,37 +335,42 @@ class SensorInterpreter {
 
             SensorManager.getAngleChange(mTiltVector, mOrientedRotationMatrix, mTargetMatrix);
         }
+    }
 
-        // Perform value scaling and clamping on value array
-        for (int i = 0; i < mTiltVector.length; i++) {
-            // Map domain of tilt vector from radian (-PI, PI) to fraction (-1, 1)
-            mTiltVector[i] /= Math.PI;
-
-            // Adjust for tilt sensitivity
-            mTiltVector[i] *= mTiltSensitivity;
+    /**
+     * Scales a tilt value interpreted with a tilt sensitivity of 1 by another tilt sensitivity,
+     * clamping the result to image bounds the same way {@link #interpretSensorEvent} does.
+     *
+     * @param tilt            the tilt value interpreted with a sensitivity of 1
+     * @param tiltSensitivity the tilt sensitivity to apply
+     * @return the scaled and clamped tilt value
+     */
+    static float scaleTilt(float tilt, float tiltSensitivity) {
+        tilt *= tiltSensitivity;
 
-            // Clamp values to image bounds
-            if (mTiltVector[i] > 1) {
-                mTiltVector[i] = 1f;
-            } else if (mTiltVector[i] < -1) {
-                mTiltVector[i] = -1f;
-            }
+        if (tilt > 1) {
+            return 1f;
+        } else if (tilt < -1) {
+            return -1f;
         }
-
-        return mTiltVector;
+        return tilt;
     }
 
     /**
-     * Pulls out the rotation vector from a {@link SensorEvent}, with a maximum length
-     * vector of four elements to avoid potential compatibility issues.
+     * Pulls out the rotation vector from a {@link SensorEvent}, converting it with the motion
+     * source if one is set, with a maximum length vector of four elements to avoid potential
+     * compatibility issues.
      *
      * @param event the sensor event
      * @return the events rotation vector, potentially truncated
      */
     @NonNull
-    @VisibleForTesting
     float[] getRotationVectorFromSensorEvent(@NonNull SensorEvent event) {
-        if (event.values.length > 4) {
+        final MotionSource motionSource = mMotionSource;
+        final float[] values = (motionSource != null)
+                ? motionSource.getRotationVector(event) : event.values;
+
+        if (values.length > 4) {
             // On some Samsung devices SensorManager.getRotationMatrixFromVector
             // appears to throw an exception if rotation vector has length > 4.
             // For the purposes of this class the first 4 values of the
@@ -154,10 +378,10 @@ class SensorInterpreter {
             if (mTruncatedRotationVector == null) {
                 mTruncatedRotationVector = new float[4];
             }
-            System.arraycopy(event.values, 0, mTruncatedRotationVector, 0, 4);
+            System.arraycopy(values, 0, mTruncatedRotationVector, 0, 4);
             return mTruncatedRotationVector;
         } else {
-            return event.values;
+            return values;
         }
     }
 
@@ -167,16 +391,88 @@ class SensorInterpreter {
      * @param values a rotation vector (presumably from a ROTATION_VECTOR sensor)
      */
     protected void setTargetVector(float[] values) {
+        // An explicit target supersedes any pending reset
+        mResetRequested = false;
+
         SensorManager.getRotationMatrixFromVector(mTargetMatrix, values);
+        mQuaternionTilt.setTarget(values);
         mTargeted = true;
     }
 
     /**
      * Resets the state of the SensorInterpreter, removing any target direction used for angle
-     * deltas to determine tilt.
+     * deltas to determine tilt. May be called from any thread, taking effect on the next
+     * interpretation.
      */
     public void reset() {
-        mTargeted = false;
+        mResetRequested = true;
+    }
+
+    /**
+     * Clears the target if a reset was requested since the last interpretation. Called by the
+     * interpreting thread only.
+     */
+    private void consumeResetRequest() {
+        if (mResetRequested) {
+            mResetRequested = false;
+            mTargeted = false;
+        }
+    }
+
+    /**
+     * Retrieves the published tilt state, which any number of threads, such as a RenderThread,
+     * GL thread, or game loop, may snapshot without locking or allocating while sensor events
+     * are interpreted. Updated by every interpreted sensor event and by the newest sample of
+     * every interpreted batch.
+     *
+     * @return the tilt state, owned by the SensorInterpreter
+     */
+    @NonNull
+    public TiltState getTiltState() {
+        return mTiltState;
+    }
+
+    /**
+     * Determines if the SensorInterpreter computes tilt directly from rotation vector
+     * quaternions.
+     *
+     * @return the quaternionEngineEnabled flag
+     */
+    public boolean isQuaternionEngineEnabled() {
+        return mQuaternionEngineEnabled;
+    }
+
+    /**
+     * Sets whether the SensorInterpreter should compute tilt directly from rotation vector
+     * quaternions instead of building, remapping, and comparing full rotation matrices. Both
+     * engines produce the same values, but the quaternion engine does less work per event
+     * and can skip axes that are not requested.
+     *
+     * @param quaternionEngineEnabled the quaternionEngineEnabled flag
+     */
+    public void setQuaternionEngineEnabled(boolean quaternionEngineEnabled) {
+        mQuaternionEngineEnabled = quaternionEngineEnabled;
+    }
+
+    /**
+     * Sets the source that sensor events are converted to rotation vectors by before being
+     * interpreted, allowing sensors such as gravity to drive the same tilt as the rotation
+     * vector sensor.
+     *
+     * @param motionSource the motion source, or null to interpret events as rotation vectors
+     */
+    public void setMotionSource(@Nullable MotionSource motionSource) {
+        mMotionSource = motionSource;
+    }
+
+    /**
+     * Sets the metrics that received events, dropped events, and interpretation times are
+     * recorded into. Nothing is measured while no metrics are set.
+     *
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(@Nullable ParallaxMetrics metrics) {
+        mMetrics = metrics;
     }
 
     /**
@@ -191,7 +487,7 @@ class SensorInterpreter {
     /**
      * Sets the new sensitivity that the SensorInterpreter will scale tilt calculations by. If this
      * sensitivity is above 1, the interpreter will have to clamp percentages to 100% and -100% at
-     * the tilt extremes.
+     * the tilt extremes. May be called from any thread.
      *
      * @param tiltSensitivity the new tilt sensitivity
      */
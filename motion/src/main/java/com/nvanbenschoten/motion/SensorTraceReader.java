@@ -0,0 +1,153 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class SensorTraceReader implements Closeable {
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mRecordCount;
+    private int mPosition = -1;
+
+    // The current record, reused for every record.
+    private long mTimestamp;
+    private int mRotation;
+    private final float[] mRotationVector3 = new float[3];
+    private final float[] mRotationVector4 = new float[4];
+    private float[] mRotationVector;
+
+    /**
+     * Opens a trace written by {@link SensorTraceRecorder}, memory mapping it so that records
+     * are read without copying or allocating.
+     *
+     * @param file the trace file
+     * @throws IOException if the file cannot be read or is not a sensor trace
+     */
+    public SensorTraceReader(@NonNull File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = mFile.getChannel();
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (mBuffer.remaining() < SensorTraceRecorder.HEADER_SIZE
+                    || mBuffer.getInt() != SensorTraceRecorder.MAGIC) {
+                throw new IOException("Not a sensor trace: " + file);
+            }
+            final int version = mBuffer.getInt();
+            if (version != SensorTraceRecorder.VERSION) {
+                throw new IOException("Unsupported sensor trace version " + version);
+            }
+            if (mBuffer.getInt() != SensorTraceRecorder.RECORD_SIZE) {
+                throw new IOException("Unexpected sensor trace record size");
+            }
+
+            // Ignore a partially written trailing record
+            mRecordCount = mBuffer.remaining() / SensorTraceRecorder.RECORD_SIZE;
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Determines the number of complete records in the trace.
+     *
+     * @return the record count
+     */
+    public int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return true if a record was read, false at the end of the trace
+     */
+    public boolean next() {
+        if (mPosition + 1 >= mRecordCount) return false;
+        mPosition++;
+
+        mTimestamp = mBuffer.getLong();
+        mRotation = mBuffer.getInt();
+        final float x = mBuffer.getFloat();
+        final float y = mBuffer.getFloat();
+        final float z = mBuffer.getFloat();
+        final float w = mBuffer.getFloat();
+
+        if (Float.isNaN(w)) {
+            mRotationVector = mRotationVector3;
+        } else {
+            mRotationVector = mRotationVector4;
+            mRotationVector4[3] = w;
+        }
+        mRotationVector[0] = x;
+        mRotationVector[1] = y;
+        mRotationVector[2] = z;
+        return true;
+    }
+
+    /**
+     * Moves back to before the first record, so that the trace can be read again.
+     */
+    public void rewind() {
+        mPosition = -1;
+        mBuffer.position(SensorTraceRecorder.HEADER_SIZE);
+    }
+
+    /**
+     * Retrieves the timestamp of the current record.
+     *
+     * @return the timestamp in nanoseconds
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Retrieves the display rotation of the current record.
+     *
+     * @return the screen rotation, one of the Surface rotation constants
+     */
+    public int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * Retrieves the rotation vector of the current record, with three or four values as it
+     * was recorded. The array is reused for the next record and must not be modified.
+     *
+     * @return the rotation vector
+     */
+    public float[] getRotationVector() {
+        return mRotationVector;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+}
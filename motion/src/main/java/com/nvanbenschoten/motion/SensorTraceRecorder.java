@@ -0,0 +1,136 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class SensorTraceRecorder implements Closeable {
+
+    /**
+     * Identifies a sensor trace, the ASCII characters MOTN.
+     */
+    static final int MAGIC = 0x4D4F544E;
+    static final int VERSION = 1;
+
+    /**
+     * The header holds the magic number, the version and the record size, as big endian ints.
+     */
+    static final int HEADER_SIZE = 12;
+
+    /**
+     * Each record holds the timestamp as a long, the display rotation as an int, and the
+     * rotation vector's x, y, z and w as floats. A NaN w marks a three value rotation vector.
+     */
+    static final int RECORD_SIZE = 28;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream mOutput;
+    private int mRecordCount;
+
+    /**
+     * Creates a recorder writing a new trace to a file, replacing any existing file.
+     *
+     * @param file the file to write the trace to
+     * @throws IOException if the file cannot be opened or written
+     */
+    public SensorTraceRecorder(@NonNull File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * Creates a recorder writing a new trace to a stream. Records are buffered, so the
+     * recorder must be closed or flushed for them to reach the stream.
+     *
+     * @param output the stream to write the trace to
+     * @throws IOException if the header cannot be written
+     */
+    public SensorTraceRecorder(@NonNull OutputStream output) throws IOException {
+        mOutput = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        mOutput.writeInt(MAGIC);
+        mOutput.writeInt(VERSION);
+        mOutput.writeInt(RECORD_SIZE);
+    }
+
+    /**
+     * Records a rotation vector event along with the display rotation it was received in.
+     * Values past the fourth, such as the heading accuracy, are not recorded.
+     *
+     * @param event    the rotation vector event
+     * @param rotation the screen rotation, one of the Surface rotation constants
+     * @throws IOException if the record cannot be written
+     */
+    public void record(@NonNull SensorEvent event, int rotation) throws IOException {
+        record(event.timestamp, rotation, event.values);
+    }
+
+    /**
+     * Records a rotation vector sample along with the display rotation it was received in.
+     * Records are buffered, but each time the 64KB buffer fills it is written through on the
+     * calling thread, so a sensor callback recording directly blocks on that write.
+     *
+     * @param timestamp      the sample timestamp in nanoseconds
+     * @param rotation       the screen rotation, one of the Surface rotation constants
+     * @param rotationVector the rotation vector, with at least three values
+     * @throws IOException if the record cannot be written
+     */
+    public void record(long timestamp, int rotation, @NonNull float[] rotationVector) throws IOException {
+        if (rotationVector.length < 3) {
+            throw new IllegalArgumentException("Rotation vectors must have at least 3 values");
+        }
+
+        mOutput.writeLong(timestamp);
+        mOutput.writeInt(rotation);
+        mOutput.writeFloat(rotationVector[0]);
+        mOutput.writeFloat(rotationVector[1]);
+        mOutput.writeFloat(rotationVector[2]);
+        mOutput.writeFloat(rotationVector.length > 3 ? rotationVector[3] : Float.NaN);
+        mRecordCount++;
+    }
+
+    /**
+     * Determines the number of records written so far.
+     *
+     * @return the record count
+     */
+    public int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Writes buffered records through to the underlying stream.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    public void flush() throws IOException {
+        mOutput.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOutput.close();
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+class SensorTraceReplayer {
+
+    /**
+     * Receives the result of each replayed record.
+     */
+    interface Callback {
+
+        /**
+         * Called for each record that produced a translation.
+         *
+         * @param timestamp the record timestamp in nanoseconds
+         * @param dx        the horizontal position of the scaled drawable's left edge
+         * @param dy        the vertical position of the scaled drawable's top edge
+         */
+        void onTranslate(long timestamp, float dx, float dy);
+    }
+
+    private final SensorInterpreter mSensorInterpreter;
+    private final ParallaxTransform mTransform;
+    private final TiltFilter mTiltFilter;
+    private final float[] mFilteredTranslation = new float[2];
+
+    /**
+     * Creates a replayer feeding records through the given interpreter and transform, which
+     * should be configured the way the recording view was, without a tilt filter.
+     *
+     * @param sensorInterpreter the interpreter to feed rotation vectors through
+     * @param transform         the configured transform to apply the tilt to
+     */
+    SensorTraceReplayer(@NonNull SensorInterpreter sensorInterpreter, @NonNull ParallaxTransform transform) {
+        this(sensorInterpreter, transform, null);
+    }
+
+    /**
+     * Creates a replayer feeding records through the given interpreter, tilt filter and
+     * transform, which should be configured the way the recording view was.
+     *
+     * @param sensorInterpreter the interpreter to feed rotation vectors through
+     * @param transform         the configured transform to apply the tilt to
+     * @param tiltFilter        a fresh instance of the view's tilt filter, or null if it had none
+     */
+    SensorTraceReplayer(@NonNull SensorInterpreter sensorInterpreter, @NonNull ParallaxTransform transform,
+                        TiltFilter tiltFilter) {
+        mSensorInterpreter = sensorInterpreter;
+        mTransform = transform;
+        mTiltFilter = tiltFilter;
+    }
+
+    /**
+     * Replays every remaining record of a trace as fast as possible, the same way
+     * {@link ParallaxImageView} handles a sensor event on its own listener: interpreted, run
+     * through the tilt filter with the record's timestamp, and applied to the transform.
+     * Replay is deterministic: the same trace and settings always produce the same
+     * translations.
+     *
+     * @param reader   the trace to replay
+     * @param callback the callback to receive each translation, or null
+     * @return the number of records that produced a translation
+     */
+    int replay(@NonNull SensorTraceReader reader, Callback callback) {
+        int translated = 0;
+        while (reader.next()) {
+            final float[] vectors = mSensorInterpreter.interpretRotationVector(reader.getRotation(),
+                    reader.getRotationVector(), SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+            if (vectors == null) continue;
+
+            float x = vectors[2];
+            float y = -vectors[1];
+            if (mTiltFilter != null) {
+                mFilteredTranslation[0] = x;
+                mFilteredTranslation[1] = y;
+                mTiltFilter.filter(mFilteredTranslation, reader.getTimestamp());
+                x = mFilteredTranslation[0];
+                y = mFilteredTranslation[1];
+            }
+
+            mTransform.setTranslate(x, y);
+            translated++;
+
+            if (callback != null) {
+                callback.onTranslate(reader.getTimestamp(), mTransform.getDx(), mTransform.getDy());
+            }
+        }
+        return translated;
+    }
+
+}
@@ -0,0 +1,475 @@
+package com.nvanbenschoten.motion;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+@TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+public class TiledBitmapDrawable extends Drawable {
+
+    private static final String TAG = TiledBitmapDrawable.class.getName();
+
+    /**
+     * The default edge length of a decoded tile in pixels.
+     */
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The default maximum size of decoded tiles, about three 1080p screens of ARGB pixels.
+     */
+    private static final long DEFAULT_MAX_BYTES = 24 * 1024 * 1024;
+
+    /**
+     * The largest edge of the low resolution base image drawn beneath tiles still decoding.
+     */
+    private static final int BASE_MAX_SIZE = 512;
+
+    /**
+     * A tile of the image at the current sample size. Only accessed on the main thread.
+     */
+    private static class Tile {
+        Bitmap bitmap;
+        boolean pending;
+        long lastDrawnFrame;
+    }
+
+    private final BitmapRegionDecoder mDecoder;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mTileSize;
+    private final long mMaxBytes;
+
+    // Tile grid for the current sample size, replaced whenever the sample size changes.
+    private int mSampleSize = 1;
+    private Tile[] mTiles;
+    private int mColumns;
+    private int mRows;
+    private volatile int mGeneration;
+    private long mBytes;
+    private long mFrame;
+
+    // Low resolution copy of the whole image, drawn where tiles are missing.
+    private Bitmap mBase;
+    private boolean mBasePending;
+    private boolean mRecycled;
+
+    // Instance variables reused while drawing.
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mClip = new Rect();
+    private final Rect mDst = new Rect();
+    private int mLastClipCenterX;
+    private int mLastClipCenterY;
+    private boolean mHasLastClip;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread mDecodeThread;
+    private Handler mDecodeHandler;
+
+    /**
+     * Creates a tiled drawable with 256 pixel tiles and a tile cache of 24MB. Requires API 10
+     * or above, like {@link BitmapRegionDecoder}.
+     *
+     * @param decoder the region decoder of the image
+     */
+    public TiledBitmapDrawable(@NonNull BitmapRegionDecoder decoder) {
+        this(decoder, DEFAULT_TILE_SIZE, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a tiled drawable that decodes regions of a large image on a background thread,
+     * at a sample size matching the scale it is displayed at, and only where they are drawn.
+     * Requires API 10 or above, like {@link BitmapRegionDecoder}.
+     *
+     * @param decoder  the region decoder of the image
+     * @param tileSize the edge length of a decoded tile in pixels
+     * @param maxBytes the maximum total size of decoded tiles and the base image in bytes
+     */
+    public TiledBitmapDrawable(@NonNull BitmapRegionDecoder decoder, int tileSize, long maxBytes) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Maximum tile bytes must be positive");
+        }
+
+        mDecoder = decoder;
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+        mTileSize = tileSize;
+        mMaxBytes = maxBytes;
+        resetTiles();
+    }
+
+    /**
+     * Sets the scale the image is displayed at, so that tiles are decoded with the largest
+     * power of two sample size that leaves one decoded pixel per screen pixel. Called by
+     * {@link ParallaxImageView} whenever its matrix is configured. Must be called on the
+     * main thread.
+     *
+     * @param displayScale the ratio of screen pixels to image pixels
+     */
+    public void setDisplayScale(float displayScale) {
+        if (displayScale <= 0) {
+            throw new IllegalArgumentException("Display scale must be positive");
+        }
+
+        final int sampleSize = ParallaxBitmapLoader.calculateInSampleSize(displayScale);
+        if (sampleSize != mSampleSize) {
+            mSampleSize = sampleSize;
+            resetTiles();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Releases all decoded tiles, the decode thread and the region decoder. The drawable must
+     * not be drawn afterwards. Must be called on the main thread.
+     */
+    public void recycle() {
+        mGeneration++;
+        mTiles = new Tile[0];
+        mColumns = 0;
+        mRows = 0;
+        mBytes = 0;
+        mBase = null;
+        mBasePending = false;
+        mRecycled = true;
+
+        if (mDecodeThread == null) {
+            mDecoder.recycle();
+            return;
+        }
+
+        // Recycle the decoder on the decode thread, after any decode already in progress
+        final HandlerThread decodeThread = mDecodeThread;
+        mDecodeHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mDecoder.recycle();
+                decodeThread.quit();
+            }
+        });
+        mDecodeThread = null;
+        mDecodeHandler = null;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        final Rect bounds = getBounds();
+        if (bounds.isEmpty() || mTiles.length == 0 || !canvas.getClipBounds(mClip)) return;
+
+        // Map the clip, which is in bounds coordinates, to image pixels
+        final float scaleX = (float) mWidth / bounds.width();
+        final float scaleY = (float) mHeight / bounds.height();
+        final int left = (int) ((mClip.left - bounds.left) * scaleX);
+        final int top = (int) ((mClip.top - bounds.top) * scaleY);
+        final int right = (int) Math.ceil((mClip.right - bounds.left) * scaleX);
+        final int bottom = (int) Math.ceil((mClip.bottom - bounds.top) * scaleY);
+
+        final int extent = mTileSize * mSampleSize;
+        final int firstColumn = Math.max(0, left / extent);
+        final int lastColumn = Math.min(mColumns - 1, (right - 1) / extent);
+        final int firstRow = Math.max(0, top / extent);
+        final int lastRow = Math.min(mRows - 1, (bottom - 1) / extent);
+        if (firstColumn > lastColumn || firstRow > lastRow) return;
+
+        mFrame++;
+
+        // Request visible tiles, falling back to the base image beneath missing ones
+        boolean missing = false;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final Tile tile = mTiles[row * mColumns + column];
+                tile.lastDrawnFrame = mFrame;
+                if (tile.bitmap == null) {
+                    missing = true;
+                    requestTile(tile, column, row);
+                }
+            }
+        }
+
+        if (missing) {
+            if (mBase != null) {
+                canvas.drawBitmap(mBase, null, bounds, mPaint);
+            } else {
+                requestBase();
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final Tile tile = mTiles[row * mColumns + column];
+                if (tile.bitmap == null) continue;
+
+                mDst.set(bounds.left + (int) (column * extent / scaleX),
+                        bounds.top + (int) (row * extent / scaleY),
+                        bounds.left + (int) Math.ceil(Math.min((column + 1) * extent, mWidth) / scaleX),
+                        bounds.top + (int) Math.ceil(Math.min((row + 1) * extent, mHeight) / scaleY));
+                canvas.drawBitmap(tile.bitmap, null, mDst, mPaint);
+            }
+        }
+
+        // Prefetch the tiles the viewport is moving towards as the device tilts
+        final int centerX = mClip.centerX();
+        final int centerY = mClip.centerY();
+        if (mHasLastClip) {
+            if (centerX > mLastClipCenterX) {
+                prefetchColumn(lastColumn + 1, firstRow, lastRow);
+            } else if (centerX < mLastClipCenterX) {
+                prefetchColumn(firstColumn - 1, firstRow, lastRow);
+            }
+
+            if (centerY > mLastClipCenterY) {
+                prefetchRow(lastRow + 1, firstColumn, lastColumn);
+            } else if (centerY < mLastClipCenterY) {
+                prefetchRow(firstRow - 1, firstColumn, lastColumn);
+            }
+        }
+        mLastClipCenterX = centerX;
+        mLastClipCenterY = centerY;
+        mHasLastClip = true;
+
+        trimTiles();
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * Discards the tile grid and builds an empty one for the current sample size. Decodes
+     * still in flight for the old grid are dropped when they complete.
+     */
+    private void resetTiles() {
+        mGeneration++;
+
+        final int extent = mTileSize * mSampleSize;
+        mColumns = (mWidth + extent - 1) / extent;
+        mRows = (mHeight + extent - 1) / extent;
+        mTiles = new Tile[mColumns * mRows];
+        for (int i = 0; i < mTiles.length; i++) {
+            mTiles[i] = new Tile();
+        }
+        mBytes = (mBase != null) ? getByteCount(mBase) : 0;
+        mHasLastClip = false;
+    }
+
+    /**
+     * Requests the tiles of a column within a range of rows, if the column exists.
+     *
+     * @param column   the column to prefetch
+     * @param firstRow the first row to prefetch
+     * @param lastRow  the last row to prefetch
+     */
+    private void prefetchColumn(int column, int firstRow, int lastRow) {
+        if (column < 0 || column >= mColumns) return;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            requestTile(mTiles[row * mColumns + column], column, row);
+        }
+    }
+
+    /**
+     * Requests the tiles of a row within a range of columns, if the row exists.
+     *
+     * @param row         the row to prefetch
+     * @param firstColumn the first column to prefetch
+     * @param lastColumn  the last column to prefetch
+     */
+    private void prefetchRow(int row, int firstColumn, int lastColumn) {
+        if (row < 0 || row >= mRows) return;
+
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            requestTile(mTiles[row * mColumns + column], column, row);
+        }
+    }
+
+    /**
+     * Decodes a tile on the decode thread, unless it is already decoded or pending.
+     *
+     * @param tile   the tile to decode
+     * @param column the column of the tile
+     * @param row    the row of the tile
+     */
+    private void requestTile(final Tile tile, int column, int row) {
+        if (tile.bitmap != null || tile.pending) return;
+        tile.pending = true;
+
+        final int generation = mGeneration;
+        final int sampleSize = mSampleSize;
+        final int extent = mTileSize * sampleSize;
+        final Rect region = new Rect(column * extent, row * extent,
+                Math.min((column + 1) * extent, mWidth), Math.min((row + 1) * extent, mHeight));
+
+        getDecodeHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) return;
+
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSize;
+                final Bitmap bitmap = mDecoder.decodeRegion(region, options);
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) return;
+
+                        tile.pending = false;
+                        if (bitmap == null) return;
+
+                        tile.bitmap = bitmap;
+                        mBytes += getByteCount(bitmap);
+                        invalidateSelf();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Decodes the low resolution base image on the decode thread, unless it is pending. A
+     * failed decode is retried the next time tiles are missing.
+     */
+    private void requestBase() {
+        if (mBasePending) return;
+        mBasePending = true;
+
+        final int sampleSize = calculateBaseSampleSize(mWidth, mHeight);
+        getDecodeHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSize;
+                final Bitmap base = mDecoder.decodeRegion(new Rect(0, 0, mWidth, mHeight), options);
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mBasePending = false;
+                        if (mRecycled || base == null) return;
+
+                        mBase = base;
+                        mBytes += getByteCount(base);
+                        invalidateSelf();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Determines the power of two sample size that fits the whole image within the base
+     * image size, so that its largest edge is at most {@link #BASE_MAX_SIZE} pixels.
+     *
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @return the sample size, at least 1
+     */
+    static int calculateBaseSampleSize(int width, int height) {
+        int sampleSize = ParallaxBitmapLoader.calculateInSampleSize(
+                Math.min((float) BASE_MAX_SIZE / width, (float) BASE_MAX_SIZE / height));
+
+        // The sample size keeps at least one decoded pixel per base pixel, round it up instead
+        while (Math.max(width, height) > BASE_MAX_SIZE * sampleSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Determines the number of bytes a decoded bitmap occupies.
+     *
+     * @param bitmap the decoded bitmap
+     * @return the size of the bitmap's pixels in bytes
+     */
+    private static long getByteCount(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Evicts the least recently drawn tiles not drawn in the current frame until the decoded
+     * tiles fit the maximum size.
+     */
+    private void trimTiles() {
+        while (mBytes > mMaxBytes) {
+            Tile oldest = null;
+            for (Tile tile : mTiles) {
+                if (tile.bitmap != null && tile.lastDrawnFrame < mFrame
+                        && (oldest == null || tile.lastDrawnFrame < oldest.lastDrawnFrame)) {
+                    oldest = tile;
+                }
+            }
+            if (oldest == null) return;
+
+            mBytes -= getByteCount(oldest.bitmap);
+            oldest.bitmap = null;
+        }
+    }
+
+    /**
+     * Retrieves the handler of the decode thread, starting the thread if needed.
+     *
+     * @return the decode handler
+     */
+    private Handler getDecodeHandler() {
+        if (mDecodeHandler == null) {
+            mDecodeThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            mDecodeThread.start();
+            mDecodeHandler = new Handler(mDecodeThread.getLooper());
+        }
+        return mDecodeHandler;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.nvanbenschoten.motion;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public interface TiltFilter {
+
+    /**
+     * Filters a tilt vector in place. Implementations must not allocate after the first call,
+     * and must keep values within -1 and 1.
+     *
+     * @param tilt      the tilt values to filter, always of the same length for a given filter
+     * @param timestamp the sensor event's timestamp in nanoseconds
+     */
+    void filter(float[] tilt, long timestamp);
+
+    /**
+     * Discards all filter history, so that the next tilt vector passes through unchanged.
+     */
+    void reset();
+
+}
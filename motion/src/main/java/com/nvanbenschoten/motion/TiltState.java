@@ -0,0 +1,142 @@
+package com.nvanbenschoten.motion;
+
+import android.support.annotation.NonNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class TiltState {
+
+    /**
+     * A consistent copy of the published tilt, filled by {@link #snapshot(Snapshot)}. Can be
+     * reused across reads so that reading does not allocate.
+     */
+    public static class Snapshot {
+
+        private float mYaw;
+        private float mPitch;
+        private float mRoll;
+        private long mTimestamp;
+        private long mSequence;
+
+        /**
+         * Retrieves the yaw delta from the target orientation.
+         *
+         * @return the yaw, between -1 and 1
+         */
+        public float getYaw() {
+            return mYaw;
+        }
+
+        /**
+         * Retrieves the pitch delta from the target orientation.
+         *
+         * @return the pitch, between -1 and 1
+         */
+        public float getPitch() {
+            return mPitch;
+        }
+
+        /**
+         * Retrieves the roll delta from the target orientation.
+         *
+         * @return the roll, between -1 and 1
+         */
+        public float getRoll() {
+            return mRoll;
+        }
+
+        /**
+         * Retrieves the timestamp of the sensor event the tilt was interpreted from.
+         *
+         * @return the sensor timestamp in nanoseconds
+         */
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        /**
+         * Retrieves the number of tilts published up to and including this one. Comparing it
+         * with the sequence of an earlier snapshot tells whether the tilt changed, and how many
+         * updates were missed in between.
+         *
+         * @return the sequence number, or 0 if nothing has been published yet
+         */
+        public long getSequence() {
+            return mSequence;
+        }
+    }
+
+    // Seqlock counter, odd while a write is in progress. Every field is volatile so that
+    // reads of the payload cannot be reordered around reads of the counter.
+    private volatile long mWriteCount;
+    private volatile float mYaw;
+    private volatile float mPitch;
+    private volatile float mRoll;
+    private volatile long mTimestamp;
+
+    /**
+     * Publishes a new tilt. Must only be called from a single writer thread at a time.
+     *
+     * @param tilt      the yaw, pitch, and roll to publish
+     * @param timestamp the timestamp of the sensor event the tilt was interpreted from
+     */
+    void publish(@NonNull float[] tilt, long timestamp) {
+        final long writeCount = mWriteCount;
+
+        mWriteCount = writeCount + 1;
+        mYaw = tilt[0];
+        mPitch = tilt[1];
+        mRoll = tilt[2];
+        mTimestamp = timestamp;
+        mWriteCount = writeCount + 2;
+    }
+
+    /**
+     * Copies the most recently published tilt into the snapshot. Never blocks the writer and
+     * never allocates. If a publish is in progress, the read is retried until a tilt that was
+     * published as a whole has been copied. Safe to call from any number of threads.
+     *
+     * @param snapshot the snapshot to fill
+     * @return true if any tilt has been published
+     */
+    public boolean snapshot(@NonNull Snapshot snapshot) {
+        while (true) {
+            final long before = mWriteCount;
+            if ((before & 1) != 0) continue;
+
+            snapshot.mYaw = mYaw;
+            snapshot.mPitch = mPitch;
+            snapshot.mRoll = mRoll;
+            snapshot.mTimestamp = mTimestamp;
+
+            if (mWriteCount == before) {
+                snapshot.mSequence = before / 2;
+                return before != 0;
+            }
+        }
+    }
+
+    /**
+     * Determines the number of tilts published so far, without reading the tilt itself.
+     * Allows readers to cheaply check for a change before taking a snapshot.
+     *
+     * @return the sequence number of the most recent tilt
+     */
+    public long getSequence() {
+        return mWriteCount / 2;
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.nvanbenschoten.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class AdaptiveSamplerTest {
+
+    private static final long PERIOD_NANOS = 5000000L;
+
+    @Test
+    public void testStartsActive() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        assertEquals(AdaptiveSampler.STATE_ACTIVE, sampler.getState());
+    }
+
+    @Test
+    public void testBecomesIdleAfterDelayWhenStill() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.setIdleDelay(1000);
+
+        long timestamp = 0;
+        sampler.onTilt(0.2f, 0.1f, timestamp);
+
+        // Still for just under the delay
+        while (timestamp + PERIOD_NANOS < 1000000000L) {
+            timestamp += PERIOD_NANOS;
+            assertFalse(sampler.onTilt(0.2f, 0.1f, timestamp));
+        }
+        assertEquals(AdaptiveSampler.STATE_ACTIVE, sampler.getState());
+
+        timestamp += PERIOD_NANOS;
+        assertTrue("state change requested", sampler.onTilt(0.2f, 0.1f, timestamp));
+        assertEquals(AdaptiveSampler.STATE_IDLE, sampler.getState());
+    }
+
+    @Test
+    public void testMotionRestartsIdleDelay() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.setIdleDelay(1000);
+
+        sampler.onTilt(0f, 0f, 0);
+        sampler.onTilt(0f, 0f, 900000000L);
+
+        // A move of 0.01 over 5ms is a speed of 2 per second
+        sampler.onTilt(0.01f, 0f, 905000000L);
+        assertFalse(sampler.onTilt(0.01f, 0f, 1500000000L));
+        assertEquals(AdaptiveSampler.STATE_ACTIVE, sampler.getState());
+    }
+
+    @Test
+    public void testSnapsBackToActiveOnMotion() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.setIdleDelay(0);
+
+        sampler.onTilt(0f, 0f, 0);
+        assertTrue(sampler.onTilt(0f, 0f, PERIOD_NANOS));
+        assertEquals(AdaptiveSampler.STATE_IDLE, sampler.getState());
+
+        assertTrue(sampler.onTilt(0f, 0.01f, 2 * PERIOD_NANOS));
+        assertEquals(AdaptiveSampler.STATE_ACTIVE, sampler.getState());
+    }
+
+    @Test
+    public void testHysteresisKeepsIdleBetweenThresholds() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.setThresholds(0.05f, 0.15f);
+        sampler.setIdleDelay(0);
+
+        sampler.onTilt(0f, 0f, 0);
+        sampler.onTilt(0f, 0f, 1000000000L);
+        assertEquals(AdaptiveSampler.STATE_IDLE, sampler.getState());
+
+        // A speed of 0.1 per second is above the idle but below the active threshold
+        assertFalse(sampler.onTilt(0.1f, 0f, 2000000000L));
+        assertEquals(AdaptiveSampler.STATE_IDLE, sampler.getState());
+    }
+
+    @Test
+    public void testResetReturnsToActive() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.setIdleDelay(0);
+
+        sampler.onTilt(0f, 0f, 0);
+        sampler.onTilt(0f, 0f, PERIOD_NANOS);
+        sampler.reset();
+
+        assertEquals(AdaptiveSampler.STATE_ACTIVE, sampler.getState());
+    }
+
+    @Test
+    public void testResetDiscardsHistoryOnNextTilt() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler();
+        sampler.setIdleDelay(0);
+
+        sampler.onTilt(0f, 0f, 0);
+        sampler.reset();
+
+        // A jump across the reset is not mistaken for motion
+        assertFalse(sampler.onTilt(1f, 1f, PERIOD_NANOS));
+        sampler.onTilt(1f, 1f, 2 * PERIOD_NANOS);
+        assertEquals(AdaptiveSampler.STATE_IDLE, sampler.getState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testActiveThresholdBelowIdleThreshold() throws Exception {
+        new AdaptiveSampler().setThresholds(0.2f, 0.1f);
+    }
+
+}
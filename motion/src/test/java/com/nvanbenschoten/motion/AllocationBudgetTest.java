@@ -0,0 +1,152 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+import android.view.Surface;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARM_UP_EVENTS = 20000;
+    private static final int MEASURED_EVENTS = 5000;
+
+    // The JVM occasionally charges a few bytes of its own to the thread, such as when the JIT
+    // swaps in recompiled code. A single 16 byte object every 20 events would still exceed it.
+    private static final long ALLOCATION_SLACK_BYTES = 256;
+
+    private static final int[] ROTATIONS = {
+            Surface.ROTATION_0, Surface.ROTATION_90, Surface.ROTATION_180, Surface.ROTATION_270
+    };
+
+    private final float[] mTranslation = new float[2];
+    private float mSink;
+
+    @Test
+    public void testSensorEventToTranslationAllocatesNothingPerEvent() throws Exception {
+        assertNoAllocationPerEvent(new SensorInterpreter(), null);
+    }
+
+    @Test
+    public void testQuaternionEngineAllocatesNothingPerEvent() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setQuaternionEngineEnabled(true);
+        assertNoAllocationPerEvent(sensorInterpreter, null);
+    }
+
+    @Test
+    public void testTiltFiltersAllocateNothingPerEvent() throws Exception {
+        assertNoAllocationPerEvent(new SensorInterpreter(), new LowPassTiltFilter());
+        assertNoAllocationPerEvent(new SensorInterpreter(), new OneEuroTiltFilter());
+        assertNoAllocationPerEvent(new SensorInterpreter(),
+                new PredictiveTiltFilter(new OneEuroTiltFilter(), 32, 0.05f));
+    }
+
+    @Test
+    public void testMetricsAllocateNothingPerEvent() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setMetrics(new ParallaxMetrics());
+        assertNoAllocationPerEvent(sensorInterpreter, null);
+    }
+
+    @Test
+    public void testGravitySourcesAllocateNothingPerEvent() throws Exception {
+        SensorInterpreter gravityInterpreter = new SensorInterpreter();
+        gravityInterpreter.setMotionSource(MotionSource.gravity());
+        assertNoAllocationPerEvent(gravityInterpreter, null);
+
+        SensorInterpreter accelerometerInterpreter = new SensorInterpreter();
+        accelerometerInterpreter.setMotionSource(MotionSource.accelerometer());
+        assertNoAllocationPerEvent(accelerometerInterpreter, null);
+    }
+
+    private void assertNoAllocationPerEvent(SensorInterpreter sensorInterpreter, TiltFilter tiltFilter)
+            throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        ParallaxTransform transform = new ParallaxTransform();
+        transform.configure(1920, 1080, 1080, 1920);
+        SensorEvent[] events = mockSensorEventSweep(64);
+
+        // Let lazily allocated buffers and the JIT settle before measuring
+        driveEvents(sensorInterpreter, tiltFilter, transform, events, WARM_UP_EVENTS);
+
+        final long threadId = Thread.currentThread().getId();
+        long overheadStart = allocationBean.getThreadAllocatedBytes(threadId);
+        long overheadEnd = allocationBean.getThreadAllocatedBytes(threadId);
+        long measureStart = allocationBean.getThreadAllocatedBytes(threadId);
+        driveEvents(sensorInterpreter, tiltFilter, transform, events, MEASURED_EVENTS);
+        long measureEnd = allocationBean.getThreadAllocatedBytes(threadId);
+
+        long allocated = (measureEnd - measureStart) - (overheadEnd - overheadStart);
+        assertTrue("allocated " + allocated + " bytes over " + MEASURED_EVENTS + " sensor events",
+                allocated <= ALLOCATION_SLACK_BYTES);
+    }
+
+    /**
+     * Mirrors {@link ParallaxImageView#onSensorChanged(SensorEvent)}, including the optional
+     * tilt filter, followed by the matrix inputs computed in ParallaxImageView#applyMatrix.
+     */
+    private void driveEvents(SensorInterpreter sensorInterpreter, TiltFilter tiltFilter,
+            ParallaxTransform transform, SensorEvent[] events, int count) {
+        final float[] translation = mTranslation;
+
+        for (int i = 0; i < count; i++) {
+            final int rotation = ROTATIONS[(i / events.length) % ROTATIONS.length];
+            final float[] vectors = sensorInterpreter.interpretSensorEvent(rotation, events[i % events.length],
+                    SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+            if (vectors == null) continue;
+
+            translation[0] = vectors[2];
+            translation[1] = -vectors[1];
+            if (tiltFilter != null) {
+                tiltFilter.filter(translation, i * 5000000L);
+            }
+
+            transform.setTranslate(translation[0], translation[1]);
+            mSink += transform.getScale() + transform.getDx() + transform.getDy();
+        }
+    }
+
+    /**
+     * Creates sensor events sweeping a small tilt back and forth, including the trailing
+     * accuracy value so that the truncated rotation vector path is exercised as well.
+     */
+    private static SensorEvent[] mockSensorEventSweep(int count) throws Exception {
+        SensorEvent[] events = new SensorEvent[count];
+        for (int i = 0; i < count; i++) {
+            float angle = (float) Math.sin(2 * Math.PI * i / count) * 0.2f;
+            float x = (float) Math.sin(angle / 2) * 0.6f;
+            float y = (float) Math.sin(angle / 2) * 0.8f;
+            float w = (float) Math.cos(angle / 2);
+            events[i] = TestUtils.mockSensorEvent(new float[]{x, y, 0f, w, -1});
+        }
+        return events;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.nvanbenschoten.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ByteBoundedLruCacheTest {
+
+    private static ByteBoundedLruCache<String, byte[]> createCache(long maxBytes) {
+        return new ByteBoundedLruCache<String, byte[]>(maxBytes) {
+            @Override
+            protected long sizeOf(byte[] value) {
+                return value.length;
+            }
+        };
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() throws Exception {
+        ByteBoundedLruCache<String, byte[]> cache = createCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+
+        // Touch a so that b becomes the least recently used
+        cache.get("a");
+        cache.put("c", new byte[40]);
+
+        assertNull("least recently used entry evicted", cache.get("b"));
+        assertEquals(40, cache.get("a").length);
+        assertEquals(40, cache.get("c").length);
+        assertEquals(80, cache.size());
+    }
+
+    @Test
+    public void testReplacingEntryUpdatesSize() throws Exception {
+        ByteBoundedLruCache<String, byte[]> cache = createCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("a", new byte[10]);
+
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testEntryLargerThanCacheIsNotCached() throws Exception {
+        ByteBoundedLruCache<String, byte[]> cache = createCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[200]);
+
+        assertNull(cache.get("b"));
+        assertEquals(40, cache.size());
+    }
+
+    @Test
+    public void testTrimToZeroEmptiesCache() throws Exception {
+        ByteBoundedLruCache<String, byte[]> cache = createCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        cache.trimToSize(0);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCacheSize() throws Exception {
+        createCache(0);
+    }
+
+}
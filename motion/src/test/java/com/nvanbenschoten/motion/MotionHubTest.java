@@ -0,0 +1,141 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class MotionHubTest {
+
+    private SensorManager mSensorManager;
+    private DisplayRotationTracker mDisplayRotationTracker;
+    private MotionHub mMotionHub;
+
+    private final MotionHub.OnTiltChangedListener mFirst = new NoOpListener();
+    private final MotionHub.OnTiltChangedListener mSecond = new NoOpListener();
+
+    @Before
+    public void setUp() throws Exception {
+        mSensorManager = mock(SensorManager.class);
+        mDisplayRotationTracker = mock(DisplayRotationTracker.class);
+        mMotionHub = new MotionHub(mSensorManager, mDisplayRotationTracker);
+    }
+
+    @Test
+    public void testSensorIsSharedUntilLastListenerLeaves() throws Exception {
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_GAME);
+        mMotionHub.registerListener(mSecond, SensorManager.SENSOR_DELAY_GAME);
+        mMotionHub.registerListener(mSecond, SensorManager.SENSOR_DELAY_GAME);
+        assertEquals(2, mMotionHub.getListenerCount());
+        verify(mSensorManager, times(1)).registerListener(any(MotionHub.class), any(Sensor.class), anyInt());
+        verify(mDisplayRotationTracker, times(1)).start();
+
+        mMotionHub.unregisterListener(mFirst);
+        mMotionHub.unregisterListener(mFirst);
+        assertEquals(1, mMotionHub.getListenerCount());
+        verify(mSensorManager, never()).unregisterListener(mMotionHub);
+
+        mMotionHub.unregisterListener(mSecond);
+        assertEquals(0, mMotionHub.getListenerCount());
+        verify(mSensorManager).unregisterListener(mMotionHub);
+        verify(mDisplayRotationTracker).stop();
+
+        // The next listener registers the sensor again
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_UI);
+        verify(mSensorManager).registerListener(mMotionHub, null, SensorManager.SENSOR_DELAY_UI);
+    }
+
+    @Test
+    public void testFasterListenerReregisters() throws Exception {
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_NORMAL);
+        mMotionHub.registerListener(mSecond, SensorManager.SENSOR_DELAY_GAME);
+
+        verify(mSensorManager).unregisterListener(mMotionHub);
+        verify(mSensorManager).registerListener(mMotionHub, null, SensorManager.SENSOR_DELAY_GAME);
+    }
+
+    @Test
+    public void testSlowerDelayConstantDoesNotReregister() throws Exception {
+        // SENSOR_DELAY_NORMAL is 3, but samples every 200 ms
+        mMotionHub.registerListener(mFirst, 20000);
+        mMotionHub.registerListener(mSecond, SensorManager.SENSOR_DELAY_NORMAL);
+
+        verify(mSensorManager, never()).unregisterListener(mMotionHub);
+        verify(mSensorManager, times(1)).registerListener(any(MotionHub.class), any(Sensor.class), anyInt());
+    }
+
+    @Test
+    public void testFasterMicrosecondsReregisterOverDelayConstant() throws Exception {
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_UI);
+        mMotionHub.registerListener(mSecond, 10000);
+
+        verify(mSensorManager).unregisterListener(mMotionHub);
+        verify(mSensorManager).registerListener(mMotionHub, null, 10000);
+    }
+
+    @Test
+    public void testSlowerRateRestoredWhenFastestListenerLeaves() throws Exception {
+        final MotionHub.OnTiltChangedListener third = new NoOpListener();
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_UI);
+        mMotionHub.registerListener(mSecond, SensorManager.SENSOR_DELAY_FASTEST);
+        mMotionHub.registerListener(third, SensorManager.SENSOR_DELAY_NORMAL);
+
+        mMotionHub.unregisterListener(mSecond);
+        verify(mSensorManager, times(2)).unregisterListener(mMotionHub);
+        verify(mSensorManager, times(2)).registerListener(mMotionHub, null, SensorManager.SENSOR_DELAY_UI);
+
+        // Removing a slower listener keeps the current rate
+        mMotionHub.unregisterListener(third);
+        verify(mSensorManager, times(2)).unregisterListener(mMotionHub);
+        verify(mSensorManager, times(3)).registerListener(any(MotionHub.class), any(Sensor.class), anyInt());
+    }
+
+    @Test
+    public void testRegisteringAgainUpdatesSamplingPeriod() throws Exception {
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_FASTEST);
+        mMotionHub.registerListener(mFirst, SensorManager.SENSOR_DELAY_GAME);
+
+        assertEquals(1, mMotionHub.getListenerCount());
+        verify(mSensorManager).unregisterListener(mMotionHub);
+        verify(mSensorManager).registerListener(mMotionHub, null, SensorManager.SENSOR_DELAY_GAME);
+
+        // The same rate written in microseconds does not re-register
+        mMotionHub.registerListener(mFirst, 20000);
+        verify(mSensorManager, times(2)).registerListener(any(MotionHub.class), any(Sensor.class), anyInt());
+    }
+
+    /**
+     * A listener that ignores tilt, for tests that only exercise registration.
+     */
+    private static class NoOpListener implements MotionHub.OnTiltChangedListener {
+
+        @Override
+        public void onTiltChanged(float[] tilt, long timestamp) { }
+
+    }
+
+}
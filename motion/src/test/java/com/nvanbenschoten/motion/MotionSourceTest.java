@@ -0,0 +1,135 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.view.Surface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class MotionSourceTest {
+
+    private static final float ACCEPTABLE_FLOAT_DELTA = 0.0001f;
+    private static final float GRAVITY = 9.81f;
+
+    @Test
+    public void testFlatGravityIsIdentity() throws Exception {
+        float[] rotationVector = new float[4];
+        GravityMotionSource.gravityToRotationVector(0, 0, GRAVITY, rotationVector);
+
+        assertArrayEquals(new float[]{0, 0, 0, 1}, rotationVector, ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testGravityMatchesRotationVectorAboutEachAxis() throws Exception {
+        float[] rotationVector = new float[4];
+        for (float angle = -1f; angle <= 1f; angle += 0.25f) {
+            float sin = (float) Math.sin(angle);
+            float cos = (float) Math.cos(angle);
+            float halfSin = (float) Math.sin(angle / 2);
+            float halfCos = (float) Math.cos(angle / 2);
+
+            // Rotating the device about its x axis tilts gravity towards its y axis
+            GravityMotionSource.gravityToRotationVector(0, sin * GRAVITY, cos * GRAVITY, rotationVector);
+            assertArrayEquals(new float[]{halfSin, 0, 0, halfCos}, rotationVector, ACCEPTABLE_FLOAT_DELTA);
+
+            // Rotating the device about its y axis tilts gravity away from its x axis
+            GravityMotionSource.gravityToRotationVector(-sin * GRAVITY, 0, cos * GRAVITY, rotationVector);
+            assertArrayEquals(new float[]{0, halfSin, 0, halfCos}, rotationVector, ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testGravityIsInterpretedLikeRotationVector() throws Exception {
+        SensorInterpreter rotationInterpreter = new SensorInterpreter();
+        rotationInterpreter.setTargetVector(new float[]{0, 0, 0, 1});
+
+        SensorInterpreter gravityInterpreter = new SensorInterpreter();
+        gravityInterpreter.setMotionSource(MotionSource.gravity());
+        gravityInterpreter.setTargetVector(new float[]{0, 0, 0, 1});
+
+        float angle = 0.3f;
+        SensorEvent rotationEvent = TestUtils.mockSensorEvent(new float[]{
+                (float) Math.sin(angle / 2), 0, 0, (float) Math.cos(angle / 2)});
+        SensorEvent gravityEvent = TestUtils.mockSensorEvent(new float[]{
+                0, (float) Math.sin(angle) * GRAVITY, (float) Math.cos(angle) * GRAVITY});
+
+        int axes = SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL;
+        float[] expected = rotationInterpreter.interpretSensorEvent(Surface.ROTATION_0, rotationEvent, axes);
+        float[] interpreted = gravityInterpreter.interpretSensorEvent(Surface.ROTATION_0, gravityEvent, axes);
+
+        assertEquals(expected[1], interpreted[1], ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(expected[2], interpreted[2], ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testFaceDownGravityFlipsAboutXAxis() throws Exception {
+        float[] rotationVector = new float[4];
+        GravityMotionSource.gravityToRotationVector(0, 0, -GRAVITY, rotationVector);
+
+        assertArrayEquals(new float[]{1, 0, 0, 0}, rotationVector, ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testResetPassesNextAccelerometerReadingThrough() throws Exception {
+        MotionSource motionSource = MotionSource.accelerometer();
+        SensorEvent flatEvent = TestUtils.mockSensorEvent(new float[]{0, 0, GRAVITY});
+        motionSource.getRotationVector(flatEvent);
+
+        float angle = 0.5f;
+        SensorEvent tiltedEvent = TestUtils.mockSensorEvent(new float[]{
+                0, (float) Math.sin(angle) * GRAVITY, (float) Math.cos(angle) * GRAVITY});
+        tiltedEvent.timestamp = 20000000L;
+        motionSource.reset();
+
+        float[] expected = new float[4];
+        GravityMotionSource.gravityToRotationVector(tiltedEvent.values[0], tiltedEvent.values[1],
+                tiltedEvent.values[2], expected);
+        assertArrayEquals(expected, motionSource.getRotationVector(tiltedEvent), ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testRotationVectorSourcePassesValuesThrough() throws Exception {
+        SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.1f, 0.2f, 0.3f, 0.927362f});
+        MotionSource motionSource = MotionSource.rotationVector();
+
+        assertEquals(Sensor.TYPE_ROTATION_VECTOR, motionSource.getSensorType());
+        assertSame(event.values, motionSource.getRotationVector(event));
+    }
+
+    @Test
+    public void testSelectPrefersFirstWithinBudget() throws Exception {
+        float[] powers = {6f, 1.5f, 0.5f, 0.2f};
+
+        assertEquals(0, MotionSource.selectIndex(powers, MotionSource.POWER_BUDGET_UNLIMITED));
+        assertEquals(1, MotionSource.selectIndex(powers, 2f));
+        assertEquals(2, MotionSource.selectIndex(powers, 0.5f));
+        assertEquals("cheapest when none fits", 3, MotionSource.selectIndex(powers, 0.1f));
+    }
+
+    @Test
+    public void testSelectSkipsUnavailableSensors() throws Exception {
+        assertEquals(2, MotionSource.selectIndex(new float[]{-1f, -1f, 0.5f, 0.2f},
+                MotionSource.POWER_BUDGET_UNLIMITED));
+        assertEquals(-1, MotionSource.selectIndex(new float[]{-1f, -1f}, 1f));
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.nvanbenschoten.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ParallaxBitmapLoaderTest {
+
+    @Test
+    public void testInSampleSizeTracksViewSizeAndIntensity() throws Exception {
+        // A 4000x3000 image covering a 1000x750 view is drawn at a quarter of its size
+        assertEquals(4, ParallaxBitmapLoader.calculateInSampleSize(4000, 3000, 1000, 750, 1f));
+
+        // The parallax intensity enlarges the image, requiring more source pixels
+        assertEquals(2, ParallaxBitmapLoader.calculateInSampleSize(4000, 3000, 1000, 750, 1.2f));
+
+        // Images smaller than the view are never subsampled
+        assertEquals(1, ParallaxBitmapLoader.calculateInSampleSize(500, 500, 1000, 1000, 1.2f));
+
+        // The axis that must cover the view decides
+        assertEquals(2, ParallaxBitmapLoader.calculateInSampleSize(4000, 1000, 1000, 500, 1f));
+    }
+
+    @Test
+    public void testInSampleSizeFromDisplayScale() throws Exception {
+        assertEquals(1, ParallaxBitmapLoader.calculateInSampleSize(1f));
+        assertEquals(1, ParallaxBitmapLoader.calculateInSampleSize(0.6f));
+        assertEquals(2, ParallaxBitmapLoader.calculateInSampleSize(0.5f));
+        assertEquals(8, ParallaxBitmapLoader.calculateInSampleSize(0.1f));
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+import android.view.Surface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class ParallaxMetricsTest {
+
+    @Test
+    public void testBucketsArePowersOfTwoMicroseconds() throws Exception {
+        assertEquals(0, ParallaxMetrics.bucket(0));
+        assertEquals(0, ParallaxMetrics.bucket(999));
+        assertEquals(1, ParallaxMetrics.bucket(1000));
+        assertEquals(2, ParallaxMetrics.bucket(2000));
+        assertEquals(2, ParallaxMetrics.bucket(3999));
+        assertEquals(3, ParallaxMetrics.bucket(4000));
+        assertEquals("negative durations count as 0", 0, ParallaxMetrics.bucket(-5000));
+        assertEquals("long durations go to the last bucket",
+                ParallaxMetrics.HISTOGRAM_BUCKETS - 1, ParallaxMetrics.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSnapshotCopiesAndStartsNewWindow() throws Exception {
+        ParallaxMetrics metrics = new ParallaxMetrics();
+        metrics.recordEventsReceived(3);
+        metrics.recordInterpretation(1500, true);
+        metrics.recordInterpretation(1500, false);
+        metrics.recordApply(true);
+        metrics.recordApply(false);
+        metrics.recordConfigure(10000);
+        metrics.recordLatency(20000000);
+
+        ParallaxMetrics.Snapshot snapshot = new ParallaxMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+
+        assertEquals(3, snapshot.getEventsReceived());
+        assertEquals(1, snapshot.getEventsDropped());
+        assertEquals(1, snapshot.getEventsClamped());
+        assertEquals(2, snapshot.getApplies());
+        assertEquals(2, snapshot.getInterpretHistogram()[1]);
+        assertEquals(1, snapshot.getConfigureHistogram()[ParallaxMetrics.bucket(10000)]);
+        assertEquals(1, snapshot.getLatencyHistogram()[ParallaxMetrics.bucket(20000000)]);
+        assertTrue(snapshot.getWindowNanos() >= 0);
+
+        metrics.snapshot(snapshot);
+
+        assertEquals(0, snapshot.getEventsReceived());
+        assertEquals(0, snapshot.getApplies());
+        assertEquals(0, snapshot.getInterpretHistogram()[1]);
+    }
+
+    @Test
+    public void testPercentileIsBucketUpperBound() throws Exception {
+        long[] histogram = new long[ParallaxMetrics.HISTOGRAM_BUCKETS];
+        histogram[2] = 90;
+        histogram[5] = 10;
+
+        assertEquals(4, ParallaxMetrics.getPercentileMicros(histogram, 0.5f));
+        assertEquals(4, ParallaxMetrics.getPercentileMicros(histogram, 0.9f));
+        assertEquals(32, ParallaxMetrics.getPercentileMicros(histogram, 0.95f));
+        assertEquals(0, ParallaxMetrics.getPercentileMicros(new long[ParallaxMetrics.HISTOGRAM_BUCKETS], 0.5f));
+    }
+
+    @Test
+    public void testSensorInterpreterRecordsEventsAndDrops() throws Exception {
+        ParallaxMetrics metrics = new ParallaxMetrics();
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setMetrics(metrics);
+
+        SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.1f, 0.2f, 0.3f});
+        sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event);
+        sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event);
+        sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, null);
+
+        ParallaxMetrics.Snapshot snapshot = new ParallaxMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+
+        assertEquals(3, snapshot.getEventsReceived());
+        assertEquals("target event and missing event dropped", 2, snapshot.getEventsDropped());
+
+        long interpretations = 0;
+        for (long count : snapshot.getInterpretHistogram()) {
+            interpretations += count;
+        }
+        assertEquals(3, interpretations);
+    }
+
+    @Test
+    public void testParallaxTransformReportsClamping() throws Exception {
+        ParallaxTransform transform = new ParallaxTransform();
+        transform.configure(1000, 1000, 500, 500);
+
+        assertTrue("jump beyond maximum is clamped", transform.setTranslate(0.5f, 0f));
+        assertEquals(false, transform.setTranslate(0.15f, 0f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentileInvalidFraction() throws Exception {
+        ParallaxMetrics.getPercentileMicros(new long[ParallaxMetrics.HISTOGRAM_BUCKETS], 2f);
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.nvanbenschoten.motion;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class PerformanceGovernorTest {
+
+    private static final long SECOND = 1000000000L;
+
+    private PerformanceGovernor mGovernor;
+    private final List<int[]> mChanges = new ArrayList<int[]>();
+
+    @Before
+    public void setUp() throws Exception {
+        mGovernor = new PerformanceGovernor(null);
+        mGovernor.setRecoveryDelay(10000);
+        mGovernor.addOnLevelChangedListener(new PerformanceGovernor.OnLevelChangedListener() {
+            @Override
+            public void onLevelChanged(int previousLevel, int level, int pressure) {
+                mChanges.add(new int[]{previousLevel, level, pressure});
+            }
+        });
+    }
+
+    @Test
+    public void testThermalPressureDegradesImmediately() throws Exception {
+        mGovernor.onBatteryTemperature(35f, 0);
+        assertEquals(PerformanceGovernor.LEVEL_FULL, mGovernor.getLevel());
+        assertEquals(0, mChanges.size());
+
+        mGovernor.onBatteryTemperature(44f, SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+        assertEquals(PerformanceGovernor.PRESSURE_THERMAL, mGovernor.getPressure());
+
+        mGovernor.onBatteryTemperature(47f, 2 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_FROZEN, mGovernor.getLevel());
+
+        assertEquals(2, mChanges.size());
+        assertEquals(PerformanceGovernor.LEVEL_FULL, mChanges.get(0)[0]);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mChanges.get(0)[1]);
+        assertEquals(PerformanceGovernor.PRESSURE_THERMAL, mChanges.get(0)[2]);
+    }
+
+    @Test
+    public void testRecoversOneLevelPerRecoveryDelay() throws Exception {
+        mGovernor.onBatteryTemperature(47f, 0);
+        mGovernor.onBatteryTemperature(30f, SECOND);
+        assertEquals("recovery is delayed", PerformanceGovernor.LEVEL_FROZEN, mGovernor.getLevel());
+        assertEquals(0, mGovernor.getPressure());
+
+        mGovernor.update(10 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_FROZEN, mGovernor.getLevel());
+
+        mGovernor.update(11 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+
+        mGovernor.update(15 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+
+        mGovernor.update(21 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+
+        mGovernor.update(31 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_FULL, mGovernor.getLevel());
+        assertEquals(4, mChanges.size());
+    }
+
+    @Test
+    public void testPressureDuringRecoveryRestartsDelay() throws Exception {
+        mGovernor.onBatteryTemperature(41f, 0);
+        mGovernor.onBatteryTemperature(30f, SECOND);
+
+        // Back at the current level before the delay passed
+        mGovernor.onBatteryTemperature(41f, 9 * SECOND);
+        mGovernor.onBatteryTemperature(30f, 10 * SECOND);
+
+        mGovernor.update(12 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+
+        mGovernor.update(20 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_FULL, mGovernor.getLevel());
+    }
+
+    @Test
+    public void testPowerSaveModeHoldsLevel() throws Exception {
+        mGovernor.onPowerSaveModeChanged(true, 0);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+        assertEquals(PerformanceGovernor.PRESSURE_POWER_SAVE, mGovernor.getPressure());
+
+        mGovernor.update(60 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+
+        mGovernor.onPowerSaveModeChanged(false, 61 * SECOND);
+        mGovernor.update(71 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_FULL, mGovernor.getLevel());
+    }
+
+    @Test
+    public void testJankStepsDownOnlyAfterAWholeWindowAtTheCurrentLevel() throws Exception {
+        mGovernor.onFrameWindow(60, 30, SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+        assertEquals(PerformanceGovernor.PRESSURE_JANK, mGovernor.getPressure());
+
+        // The window the level changed in does not reflect the new level
+        mGovernor.onFrameWindow(60, 30, 2 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+
+        mGovernor.onFrameWindow(60, 30, 3 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+
+        // Between the thresholds the jank level is kept
+        mGovernor.onFrameWindow(60, 6, 4 * SECOND);
+        mGovernor.onFrameWindow(60, 6, 30 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+
+        mGovernor.onFrameWindow(60, 0, 31 * SECOND);
+        assertEquals(0, mGovernor.getPressure());
+        mGovernor.onFrameWindow(60, 0, 41 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_REDUCED_SAMPLING, mGovernor.getLevel());
+    }
+
+    @Test
+    public void testJankAloneNeverFreezes() throws Exception {
+        for (int i = 1; i <= 20; i++) {
+            mGovernor.onFrameWindow(60, 60, i * SECOND);
+        }
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+
+        // Thermal pressure still freezes, and jank does not hold the level down once it eases
+        mGovernor.onBatteryTemperature(47f, 21 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_FROZEN, mGovernor.getLevel());
+        mGovernor.onBatteryTemperature(30f, 22 * SECOND);
+        mGovernor.onFrameWindow(60, 0, 23 * SECOND);
+        mGovernor.update(32 * SECOND);
+        assertEquals(PerformanceGovernor.LEVEL_COARSE_UPDATES, mGovernor.getLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreasingThermalThresholds() throws Exception {
+        mGovernor.setThermalThresholds(45f, 43f, 47f);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorManager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class SamplingPeriodsTest {
+
+    @Test
+    public void testDelayConstantsToMicroseconds() throws Exception {
+        assertEquals(0, SamplingPeriods.toMicroseconds(SensorManager.SENSOR_DELAY_FASTEST));
+        assertEquals(20000, SamplingPeriods.toMicroseconds(SensorManager.SENSOR_DELAY_GAME));
+        assertEquals(66667, SamplingPeriods.toMicroseconds(SensorManager.SENSOR_DELAY_UI));
+        assertEquals(200000, SamplingPeriods.toMicroseconds(SensorManager.SENSOR_DELAY_NORMAL));
+
+        // Periods in microseconds are passed through
+        assertEquals(10000, SamplingPeriods.toMicroseconds(10000));
+    }
+
+    @Test
+    public void testIsFasterComparesRates() throws Exception {
+        // SENSOR_DELAY_NORMAL is numerically smaller, but samples every 200 ms
+        assertTrue(SamplingPeriods.isFaster(20000, SensorManager.SENSOR_DELAY_NORMAL));
+        assertFalse(SamplingPeriods.isFaster(SensorManager.SENSOR_DELAY_NORMAL, 20000));
+
+        assertTrue(SamplingPeriods.isFaster(SensorManager.SENSOR_DELAY_FASTEST, SensorManager.SENSOR_DELAY_GAME));
+        assertTrue(SamplingPeriods.isFaster(10000, SensorManager.SENSOR_DELAY_GAME));
+
+        // Equal rates are not faster, whichever way they are written
+        assertFalse(SamplingPeriods.isFaster(SensorManager.SENSOR_DELAY_GAME, 20000));
+        assertFalse(SamplingPeriods.isFaster(20000, SensorManager.SENSOR_DELAY_GAME));
+    }
+
+    @Test
+    public void testSlowerSamplingPeriod() throws Exception {
+        assertEquals(SensorManager.SENSOR_DELAY_GAME, SamplingPeriods.slower(
+                SensorManager.SENSOR_DELAY_FASTEST, SensorManager.SENSOR_DELAY_GAME));
+        assertEquals(SensorManager.SENSOR_DELAY_UI, SamplingPeriods.slower(
+                SensorManager.SENSOR_DELAY_UI, SensorManager.SENSOR_DELAY_GAME));
+        assertEquals(50000, SamplingPeriods.slower(
+                50000, SensorManager.SENSOR_DELAY_GAME));
+        assertEquals(SensorManager.SENSOR_DELAY_GAME, SamplingPeriods.slower(
+                10000, SensorManager.SENSOR_DELAY_GAME));
+    }
+
+}
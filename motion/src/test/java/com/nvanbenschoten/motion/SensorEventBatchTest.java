@@ -0,0 +1,129 @@
+package com.nvanbenschoten.motion;
+
+import android.view.Surface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class SensorEventBatchTest {
+
+    private static final float ACCEPTABLE_FLOAT_DELTA = 0.0001f;
+    private static final long FRAME_INTERVAL_NANOS = 16000000L;
+    private static final float[] TARGET = {0.1f, 0.2f, 0.3f, 0.927362f};
+
+    @Test
+    public void testKeepsNewestSamplePerFrame() throws Exception {
+        long[] timestamps = {1000000L, 5000000L, 17000000L, 20000000L, 40000000L};
+        float[][] vectors = new float[timestamps.length][];
+
+        SensorEventBatch batch = new SensorEventBatch(8);
+        for (int i = 0; i < timestamps.length; i++) {
+            vectors[i] = unitVector(0.1f * i, -0.05f * i);
+            batch.add(vectors[i], timestamps[i]);
+        }
+
+        SensorInterpreter batchInterpreter = new SensorInterpreter();
+        batchInterpreter.setTargetVector(TARGET);
+        int count = batch.interpret(batchInterpreter, Surface.ROTATION_0, FRAME_INTERVAL_NANOS,
+                SensorInterpreter.TILT_ALL);
+
+        // The last sample of each 16 ms bucket
+        int[] expected = {1, 3, 4};
+        assertEquals(expected.length, count);
+
+        SensorInterpreter interpreter = new SensorInterpreter();
+        interpreter.setTargetVector(TARGET);
+        for (int i = 0; i < expected.length; i++) {
+            float[] tilt = interpreter.interpretRotationVector(Surface.ROTATION_0,
+                    vectors[expected[i]], SensorInterpreter.TILT_ALL);
+
+            assertEquals(timestamps[expected[i]], batch.getTiltTimestamps()[i]);
+            for (int axis = 0; axis < 3; axis++) {
+                assertEquals(tilt[axis], batch.getTilts()[i * 3 + axis], ACCEPTABLE_FLOAT_DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testCompletesThreeValueVectors() throws Exception {
+        float[] vector = unitVector(0.3f, 0.2f);
+        float[] truncated = {vector[0], vector[1], vector[2]};
+
+        SensorEventBatch batch = new SensorEventBatch(2);
+        batch.add(truncated, 1000);
+
+        SensorInterpreter batchInterpreter = new SensorInterpreter();
+        batchInterpreter.setTargetVector(TARGET);
+        assertEquals(1, batch.interpret(batchInterpreter, Surface.ROTATION_0, FRAME_INTERVAL_NANOS,
+                SensorInterpreter.TILT_ALL));
+
+        SensorInterpreter interpreter = new SensorInterpreter();
+        interpreter.setTargetVector(TARGET);
+        float[] tilt = interpreter.interpretRotationVector(Surface.ROTATION_0, vector,
+                SensorInterpreter.TILT_ALL);
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(tilt[axis], batch.getTilts()[axis], ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testFirstSampleSetsMissingTarget() throws Exception {
+        SensorEventBatch batch = new SensorEventBatch(4);
+        batch.add(TARGET, 1000);
+        batch.add(unitVector(0.2f, 0.1f), 2000);
+
+        SensorInterpreter batchInterpreter = new SensorInterpreter();
+        int count = batch.interpret(batchInterpreter, Surface.ROTATION_0, FRAME_INTERVAL_NANOS,
+                SensorInterpreter.TILT_ALL);
+
+        // The first sample only sets the target, although it shares a frame with the second
+        assertEquals(1, count);
+        assertEquals(2000, batch.getTiltTimestamps()[0]);
+    }
+
+    @Test
+    public void testReportsFullAndEmptiesOnInterpret() throws Exception {
+        SensorEventBatch batch = new SensorEventBatch(2);
+        assertFalse(batch.add(TARGET, 1000));
+        assertTrue("full", batch.add(TARGET, 2000));
+
+        SensorInterpreter batchInterpreter = new SensorInterpreter();
+        batchInterpreter.setTargetVector(TARGET);
+        assertEquals(1, batch.interpret(batchInterpreter, Surface.ROTATION_0, FRAME_INTERVAL_NANOS,
+                SensorInterpreter.TILT_ALL));
+        assertEquals(0, batch.interpret(batchInterpreter, Surface.ROTATION_0, FRAME_INTERVAL_NANOS,
+                SensorInterpreter.TILT_ALL));
+    }
+
+    /**
+     * Builds a normalized rotation vector tilted away from the identity.
+     *
+     * @param x the unnormalized x component
+     * @param y the unnormalized y component
+     * @return the rotation vector, with four values
+     */
+    private static float[] unitVector(float x, float y) {
+        float z = 0.1f;
+        float norm = (float) Math.sqrt(x * x + y * y + z * z + 1);
+        return new float[]{x / norm, y / norm, z / norm, 1 / norm};
+    }
+
+}
@@ -8,6 +8,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /*
  * Copyright 2014 Nathan VanBenschoten
@@ -99,6 +100,199 @@ public class SensorInterpreterTest {
         assertEquals("negative numbers under -1 clamp to -1", -1, interpreted[2], ACCEPTABLE_FLOAT_DELTA);
     }
 
+    @Test
+    public void testInterpretSensorEventWithRotationMatchesContext() throws Exception {
+        int[] rotations = {Surface.ROTATION_0, Surface.ROTATION_90, Surface.ROTATION_180, Surface.ROTATION_270};
+
+        for (int rotation : rotations) {
+            SensorInterpreter contextInterpreter = new SensorInterpreter();
+            contextInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+            SensorInterpreter rotationInterpreter = new SensorInterpreter();
+            rotationInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+            Context context = TestUtils.mockRotationContext(rotation);
+            SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.7f, 0.7f, 0.7f});
+
+            float[] expected = contextInterpreter.interpretSensorEvent(context, event).clone();
+            float[] interpreted = rotationInterpreter.interpretSensorEvent(rotation, event);
+
+            assertArrayEquals(expected, interpreted, ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testInterpretSensorEventWithRotationSetsTarget() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.1f, 0.2f, 0.3f});
+
+        assertNull("first event sets target", sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event));
+        assertArrayEquals(new float[]{0f, 0f, 0f},
+                sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event), ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testQuaternionEngineMatchesExpectedValues() throws Exception {
+        int[] rotations = {Surface.ROTATION_0, Surface.ROTATION_90, Surface.ROTATION_180, Surface.ROTATION_270};
+        float[][] expected = {
+                {-0.19003f, 0.21814f, 0.02382f},
+                {1.0f, 0.04103f, -0.12279f},
+                {1.0f, -0.21815f, -0.02382f},
+                {-0.92730f, -0.04103f, 0.12279f},
+        };
+
+        for (int i = 0; i < rotations.length; i++) {
+            SensorInterpreter sensorInterpreter = new SensorInterpreter();
+            sensorInterpreter.setQuaternionEngineEnabled(true);
+            sensorInterpreter.setTiltSensitivity(2);
+            sensorInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+            SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.7f, 0.7f, 0.7f});
+
+            float[] interpreted = sensorInterpreter.interpretSensorEvent(rotations[i], event);
+
+            assertArrayEquals(expected[i], interpreted, ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testQuaternionEngineMatchesMatrixEngine() throws Exception {
+        int[] rotations = {Surface.ROTATION_0, Surface.ROTATION_90, Surface.ROTATION_180, Surface.ROTATION_270};
+        float[][] targets = {
+                {0.1f, 0.2f, 0.3f},
+                {0f, 0f, 0f, 1f},
+                {0.5f, 0.6f, 0.7f},
+                {-0.3f, 0.1f, 0.4f, 0.860233f},
+        };
+        float[][] values = {
+                {0.12f, 0.18f, 0.33f},
+                {0.05f, -0.1f, 0.02f, 0.993730f},
+                {0.7f, 0.7f, 0.7f},
+                {-0.25f, 0.2f, 0.35f, 0.882326f, -1},
+        };
+
+        for (int rotation : rotations) {
+            for (int i = 0; i < targets.length; i++) {
+                SensorInterpreter matrixInterpreter = new SensorInterpreter();
+                matrixInterpreter.setTiltSensitivity(1);
+                matrixInterpreter.setTargetVector(targets[i]);
+
+                SensorInterpreter quaternionInterpreter = new SensorInterpreter();
+                quaternionInterpreter.setQuaternionEngineEnabled(true);
+                quaternionInterpreter.setTiltSensitivity(1);
+                quaternionInterpreter.setTargetVector(targets[i]);
+
+                SensorEvent event = TestUtils.mockSensorEvent(values[i]);
+
+                float[] expected = matrixInterpreter.interpretSensorEvent(rotation, event).clone();
+                float[] interpreted = quaternionInterpreter.interpretSensorEvent(rotation, event);
+
+                assertArrayEquals(expected, interpreted, ACCEPTABLE_FLOAT_DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testQuaternionEngineComputesRequestedAxesOnly() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setQuaternionEngineEnabled(true);
+        sensorInterpreter.setTiltSensitivity(2);
+        sensorInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+        SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.7f, 0.7f, 0.7f});
+
+        float[] interpreted = sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event,
+                SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+
+        assertArrayEquals(new float[]{0f, 0.21814f, 0.02382f}, interpreted, ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testInterpretRotationVectorsKeepsNewestPerFrame() throws Exception {
+        SensorInterpreter batchInterpreter = new SensorInterpreter();
+        batchInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+        float[] rotationVectors = {
+                0.6f, 0.6f, 0.7f,
+                0.7f, 0.6f, 0.7f,
+                0.7f, 0.7f, 0.7f,
+                0.5f, 0.5f, 0.7f,
+        };
+        long[] timestamps = {0, 5, 12, 25};
+        float[] tilts = new float[12];
+        long[] tiltTimestamps = new long[4];
+
+        int count = batchInterpreter.interpretRotationVectors(Surface.ROTATION_0, rotationVectors, 3,
+                timestamps, 4, 10, SensorInterpreter.TILT_ALL, tilts, tiltTimestamps);
+
+        // Samples 1, 2, and 3 are the newest in frames [0, 10), [10, 20), and [20, 30)
+        int[] samples = {1, 2, 3};
+        assertEquals("newest sample of each frame interpreted", samples.length, count);
+
+        for (int i = 0; i < count; i++) {
+            int sample = samples[i];
+            assertEquals(timestamps[sample], tiltTimestamps[i]);
+
+            SensorInterpreter eventInterpreter = new SensorInterpreter();
+            eventInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+            SensorEvent event = TestUtils.mockSensorEvent(new float[]{rotationVectors[sample * 3],
+                    rotationVectors[sample * 3 + 1], rotationVectors[sample * 3 + 2]});
+
+            float[] expected = eventInterpreter.interpretSensorEvent(Surface.ROTATION_0, event);
+            float[] interpreted = {tilts[i * 3], tilts[i * 3 + 1], tilts[i * 3 + 2]};
+
+            assertArrayEquals(expected, interpreted, ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testInterpretRotationVectorsWithoutFrameIntervalKeepsNewest() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setTargetVector(new float[]{0.1f, 0.2f, 0.3f, 0.927362f});
+
+        float[] rotationVectors = {
+                0.1f, 0.2f, 0.3f, 0.927362f,
+                0.1f, 0.2f, 0.3f, 0.927362f,
+        };
+        float[] tilts = new float[6];
+        long[] tiltTimestamps = new long[2];
+
+        int count = sensorInterpreter.interpretRotationVectors(Surface.ROTATION_0, rotationVectors, 4,
+                new long[]{100, 200}, 2, 0, SensorInterpreter.TILT_ALL, tilts, tiltTimestamps);
+
+        assertEquals(1, count);
+        assertEquals(200, tiltTimestamps[0]);
+        assertArrayEquals(new float[]{0f, 0f, 0f}, new float[]{tilts[0], tilts[1], tilts[2]},
+                ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testInterpretRotationVectorsSetsTargetFromFirstSample() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+
+        float[] rotationVectors = {
+                0.1f, 0.2f, 0.3f,
+                0.1f, 0.2f, 0.3f,
+        };
+        float[] tilts = new float[6];
+        long[] tiltTimestamps = new long[2];
+
+        int count = sensorInterpreter.interpretRotationVectors(Surface.ROTATION_0, rotationVectors, 3,
+                new long[]{0, 1}, 2, 10, SensorInterpreter.TILT_ALL, tilts, tiltTimestamps);
+
+        assertEquals("first sample sets target", 1, count);
+        assertEquals(1, tiltTimestamps[0]);
+        assertArrayEquals(new float[]{0f, 0f, 0f}, new float[]{tilts[0], tilts[1], tilts[2]},
+                ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInterpretRotationVectorsWithShortStride() throws Exception {
+        new SensorInterpreter().interpretRotationVectors(Surface.ROTATION_0, new float[2], 2,
+                new long[1], 1, 0, SensorInterpreter.TILT_ALL, new float[3], new long[1]);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testSetInvalidTiltSensitivity() throws Exception {
         SensorInterpreter sensorInterpreter = new SensorInterpreter();
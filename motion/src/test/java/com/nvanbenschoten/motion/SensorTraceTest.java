@@ -0,0 +1,203 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+import android.view.Surface;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class SensorTraceTest {
+
+    private final float ACCEPTABLE_FLOAT_DELTA = 0.0001f;
+
+    private static final int[] ROTATIONS = {
+            Surface.ROTATION_0, Surface.ROTATION_90, Surface.ROTATION_180, Surface.ROTATION_270
+    };
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsRoundTrip() throws Exception {
+        File trace = mTemporaryFolder.newFile();
+
+        SensorTraceRecorder recorder = new SensorTraceRecorder(trace);
+        recorder.record(TestUtils.mockSensorEvent(new float[]{0.1f, 0.2f, 0.3f, 0.927362f, -1}), Surface.ROTATION_90);
+        recorder.record(1000L, Surface.ROTATION_0, new float[]{0.5f, 0.6f, 0.7f});
+        assertEquals(2, recorder.getRecordCount());
+        recorder.close();
+
+        assertEquals("fixed width records", SensorTraceRecorder.HEADER_SIZE + 2 * SensorTraceRecorder.RECORD_SIZE,
+                trace.length());
+
+        SensorTraceReader reader = new SensorTraceReader(trace);
+        assertEquals(2, reader.getRecordCount());
+
+        assertTrue(reader.next());
+        assertEquals(Surface.ROTATION_90, reader.getRotation());
+        assertArrayEquals("accuracy value dropped", new float[]{0.1f, 0.2f, 0.3f, 0.927362f},
+                reader.getRotationVector(), 0f);
+
+        assertTrue(reader.next());
+        assertEquals(1000L, reader.getTimestamp());
+        assertEquals(Surface.ROTATION_0, reader.getRotation());
+        assertArrayEquals("three value vector kept", new float[]{0.5f, 0.6f, 0.7f},
+                reader.getRotationVector(), 0f);
+
+        assertFalse(reader.next());
+
+        reader.rewind();
+        assertTrue(reader.next());
+        assertEquals(Surface.ROTATION_90, reader.getRotation());
+        reader.close();
+    }
+
+    @Test
+    public void testReplayMatchesLiveInterpretation() throws Exception {
+        File trace = mTemporaryFolder.newFile();
+        SensorEvent[] events = mockSensorEventSweep(200);
+
+        SensorTraceRecorder recorder = new SensorTraceRecorder(trace);
+        for (int i = 0; i < events.length; i++) {
+            recorder.record(events[i], ROTATIONS[i / 50]);
+        }
+        recorder.close();
+
+        // Interpret the events as ParallaxImageView would while recording
+        SensorInterpreter liveInterpreter = new SensorInterpreter();
+        ParallaxTransform liveTransform = new ParallaxTransform();
+        liveTransform.configure(1920, 1080, 1080, 1920);
+        List<float[]> expected = new ArrayList<float[]>();
+        for (int i = 0; i < events.length; i++) {
+            float[] vectors = liveInterpreter.interpretSensorEvent(ROTATIONS[i / 50], events[i],
+                    SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+            if (vectors == null) continue;
+
+            liveTransform.setTranslate(vectors[2], -vectors[1]);
+            expected.add(new float[]{events[i].timestamp, liveTransform.getDx(), liveTransform.getDy()});
+        }
+
+        ParallaxTransform replayTransform = new ParallaxTransform();
+        replayTransform.configure(1920, 1080, 1080, 1920);
+        SensorTraceReplayer replayer = new SensorTraceReplayer(new SensorInterpreter(), replayTransform);
+
+        final List<float[]> replayed = new ArrayList<float[]>();
+        SensorTraceReader reader = new SensorTraceReader(trace);
+        int translated = replayer.replay(reader, new SensorTraceReplayer.Callback() {
+            @Override
+            public void onTranslate(long timestamp, float dx, float dy) {
+                replayed.add(new float[]{timestamp, dx, dy});
+            }
+        });
+        reader.close();
+
+        assertEquals("first record sets target", events.length - 1, translated);
+        assertEquals(expected.size(), replayed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), replayed.get(i), ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testReplayAppliesTiltFilter() throws Exception {
+        File trace = mTemporaryFolder.newFile();
+        SensorEvent[] events = mockSensorEventSweep(100);
+
+        SensorTraceRecorder recorder = new SensorTraceRecorder(trace);
+        for (SensorEvent event : events) {
+            recorder.record(event, Surface.ROTATION_0);
+        }
+        recorder.close();
+
+        // Filter the interpreted tilt with each event's timestamp as ParallaxImageView would
+        SensorInterpreter liveInterpreter = new SensorInterpreter();
+        TiltFilter liveFilter = new LowPassTiltFilter(2f);
+        ParallaxTransform liveTransform = new ParallaxTransform();
+        liveTransform.configure(1920, 1080, 1080, 1920);
+        float[] translation = new float[2];
+        for (SensorEvent event : events) {
+            float[] vectors = liveInterpreter.interpretSensorEvent(Surface.ROTATION_0, event,
+                    SensorInterpreter.TILT_PITCH | SensorInterpreter.TILT_ROLL);
+            if (vectors == null) continue;
+
+            translation[0] = vectors[2];
+            translation[1] = -vectors[1];
+            liveFilter.filter(translation, event.timestamp);
+            liveTransform.setTranslate(translation[0], translation[1]);
+        }
+
+        ParallaxTransform replayTransform = new ParallaxTransform();
+        replayTransform.configure(1920, 1080, 1080, 1920);
+        SensorTraceReplayer replayer = new SensorTraceReplayer(new SensorInterpreter(), replayTransform,
+                new LowPassTiltFilter(2f));
+        SensorTraceReader reader = new SensorTraceReader(trace);
+        replayer.replay(reader, null);
+        reader.close();
+
+        assertEquals(liveTransform.getDx(), replayTransform.getDx(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(liveTransform.getDy(), replayTransform.getDy(), ACCEPTABLE_FLOAT_DELTA);
+
+        // The filter lags the sweep, so the unfiltered replay ends elsewhere
+        ParallaxTransform unfilteredTransform = new ParallaxTransform();
+        unfilteredTransform.configure(1920, 1080, 1080, 1920);
+        reader = new SensorTraceReader(trace);
+        new SensorTraceReplayer(new SensorInterpreter(), unfilteredTransform).replay(reader, null);
+        reader.close();
+        assertNotEquals(unfilteredTransform.getDy(), replayTransform.getDy(), ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsFileWithoutHeader() throws Exception {
+        File trace = mTemporaryFolder.newFile();
+        FileOutputStream output = new FileOutputStream(trace);
+        output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        output.close();
+
+        new SensorTraceReader(trace);
+    }
+
+    /**
+     * Creates sensor events sweeping a small tilt back and forth, with increasing timestamps.
+     */
+    private static SensorEvent[] mockSensorEventSweep(int count) throws Exception {
+        SensorEvent[] events = new SensorEvent[count];
+        for (int i = 0; i < count; i++) {
+            float angle = (float) Math.sin(2 * Math.PI * i / 64) * 0.2f;
+            float x = (float) Math.sin(angle / 2) * 0.6f;
+            float y = (float) Math.sin(angle / 2) * 0.8f;
+            float w = (float) Math.cos(angle / 2);
+            events[i] = TestUtils.mockSensorEvent(new float[]{x, y, 0f, w, -1});
+            events[i].timestamp = i * 5000000L;
+        }
+        return events;
+    }
+
+}
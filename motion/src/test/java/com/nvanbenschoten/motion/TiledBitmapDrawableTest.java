@@ -0,0 +1,33 @@
+package com.nvanbenschoten.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class TiledBitmapDrawableTest {
+
+    @Test
+    public void testBaseSampleSizeFitsLargestEdge() throws Exception {
+        // A wide panorama is sampled down by its long edge, not its short one
+        assertEquals(64, TiledBitmapDrawable.calculateBaseSampleSize(20000, 2000));
+        assertEquals(8, TiledBitmapDrawable.calculateBaseSampleSize(4096, 3072));
+        assertEquals(2, TiledBitmapDrawable.calculateBaseSampleSize(600, 4));
+        assertEquals(1, TiledBitmapDrawable.calculateBaseSampleSize(512, 300));
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.nvanbenschoten.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class TiltFilterTest {
+
+    private final float ACCEPTABLE_FLOAT_DELTA = 0.0001f;
+
+    /**
+     * Sampling period of SENSOR_DELAY_GAME, 20ms.
+     */
+    private static final long GAME_PERIOD_NANOS = 20000000L;
+
+    @Test
+    public void testPassThroughLeavesTiltUnchanged() throws Exception {
+        TiltFilter filter = new PassThroughTiltFilter();
+
+        float[] tilt = {0.3f, -0.7f};
+        filter.filter(tilt, 0);
+        filter.filter(tilt, GAME_PERIOD_NANOS);
+
+        assertArrayEquals(new float[]{0.3f, -0.7f}, tilt, ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testLowPassFirstSamplePassesThrough() throws Exception {
+        TiltFilter filter = new LowPassTiltFilter(4f);
+
+        float[] tilt = {0.5f, -0.5f};
+        filter.filter(tilt, 1000);
+
+        assertArrayEquals(new float[]{0.5f, -0.5f}, tilt, ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testLowPassSmoothsStepAndConverges() throws Exception {
+        TiltFilter filter = new LowPassTiltFilter(4f);
+
+        float[] tilt = {0f};
+        filter.filter(tilt, 0);
+
+        tilt[0] = 1f;
+        filter.filter(tilt, GAME_PERIOD_NANOS);
+        assertTrue("step is smoothed", tilt[0] > 0 && tilt[0] < 1);
+
+        // Expected smoothing factor for a 20ms step with a 4Hz cutoff
+        float timeConstant = (float) (1 / (2 * Math.PI * 4));
+        assertEquals(0.02f / (timeConstant + 0.02f), tilt[0], ACCEPTABLE_FLOAT_DELTA);
+
+        for (int i = 2; i < 100; i++) {
+            tilt[0] = 1f;
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+        }
+        assertEquals(1f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testLowPassIgnoresDuplicateTimestamps() throws Exception {
+        TiltFilter filter = new LowPassTiltFilter(4f);
+
+        float[] tilt = {0f};
+        filter.filter(tilt, GAME_PERIOD_NANOS);
+
+        tilt[0] = 1f;
+        filter.filter(tilt, GAME_PERIOD_NANOS);
+        assertEquals(0f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testOutOfOrderEventsHoldTheLastValue() throws Exception {
+        TiltFilter[] filters = {new LowPassTiltFilter(4f), new OneEuroTiltFilter()};
+        TiltFilter[] references = {new LowPassTiltFilter(4f), new OneEuroTiltFilter()};
+
+        for (int i = 0; i < filters.length; i++) {
+            float[] tilt = {0f};
+            float[] reference = {0f};
+            filters[i].filter(tilt, 10 * GAME_PERIOD_NANOS);
+            references[i].filter(reference, 10 * GAME_PERIOD_NANOS);
+
+            // A stale event holds the last filtered value
+            tilt[0] = 1f;
+            filters[i].filter(tilt, 5 * GAME_PERIOD_NANOS);
+            assertEquals(0f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+
+            // and does not rewind the clock the next interval is measured from
+            tilt[0] = 1f;
+            reference[0] = 1f;
+            filters[i].filter(tilt, 11 * GAME_PERIOD_NANOS);
+            references[i].filter(reference, 11 * GAME_PERIOD_NANOS);
+            assertEquals(reference[0], tilt[0], ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testResetPassesNextSampleThrough() throws Exception {
+        TiltFilter[] filters = {new LowPassTiltFilter(), new OneEuroTiltFilter()};
+
+        for (TiltFilter filter : filters) {
+            float[] tilt = {0f};
+            filter.filter(tilt, 0);
+            filter.reset();
+
+            tilt[0] = 0.8f;
+            filter.filter(tilt, GAME_PERIOD_NANOS);
+            assertEquals(0.8f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+        }
+    }
+
+    @Test
+    public void testOneEuroFollowsFastMovementMoreClosely() throws Exception {
+        // Same minimum cutoff, so slow movement is smoothed equally by both filters
+        TiltFilter lowPass = new LowPassTiltFilter(1f);
+        TiltFilter oneEuro = new OneEuroTiltFilter(1f, 0.5f, 1f);
+
+        float[] lowPassTilt = {0f};
+        float[] oneEuroTilt = {0f};
+        lowPass.filter(lowPassTilt, 0);
+        oneEuro.filter(oneEuroTilt, 0);
+
+        // A fast flick from 0 to 1 over 100ms
+        for (int i = 1; i <= 5; i++) {
+            lowPassTilt[0] = i / 5f;
+            oneEuroTilt[0] = i / 5f;
+            lowPass.filter(lowPassTilt, i * GAME_PERIOD_NANOS);
+            oneEuro.filter(oneEuroTilt, i * GAME_PERIOD_NANOS);
+        }
+
+        assertTrue("one euro lags less on fast movement", oneEuroTilt[0] > lowPassTilt[0]);
+        assertTrue("one euro stays in bounds", oneEuroTilt[0] <= 1f);
+    }
+
+    @Test
+    public void testOneEuroSmoothsJitterWhileStill() throws Exception {
+        TiltFilter filter = new OneEuroTiltFilter();
+
+        float[] tilt = {0f};
+        filter.filter(tilt, 0);
+
+        float maxOutput = 0;
+        for (int i = 1; i <= 50; i++) {
+            tilt[0] = (i % 2 == 0) ? 0.01f : -0.01f;
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+            maxOutput = Math.max(maxOutput, Math.abs(tilt[0]));
+        }
+
+        assertTrue("jitter is attenuated", maxOutput < 0.005f);
+    }
+
+    @Test
+    public void testPredictiveLeadsConstantVelocity() throws Exception {
+        TiltFilter filter = new PredictiveTiltFilter(40, 1f);
+
+        // Ramp at 0.5 per second, 0.01 per 20ms sample
+        float[] tilt = {0f};
+        for (int i = 0; i <= 50; i++) {
+            tilt[0] = i * 0.01f;
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+        }
+
+        // Extrapolated 40ms ahead of the last measurement of 0.5
+        assertEquals(0.52f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testPredictiveLeavesStillTiltUnchanged() throws Exception {
+        TiltFilter filter = new PredictiveTiltFilter();
+
+        float[] tilt = {0.3f, -0.4f};
+        for (int i = 0; i < 10; i++) {
+            tilt[0] = 0.3f;
+            tilt[1] = -0.4f;
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+        }
+
+        assertArrayEquals(new float[]{0.3f, -0.4f}, tilt, ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testPredictiveClampsLead() throws Exception {
+        TiltFilter filter = new PredictiveTiltFilter(100, 0.02f);
+
+        float[] tilt = {0f};
+        for (int i = 0; i <= 20; i++) {
+            tilt[0] = i * 0.04f;
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+        }
+
+        assertEquals("lead clamped", 0.82f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+
+        for (int i = 21; i <= 40; i++) {
+            tilt[0] = Math.min(i * 0.04f, 1f);
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+        }
+
+        assertEquals("prediction stays within bounds", 1f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test
+    public void testPredictiveResetForgetsVelocity() throws Exception {
+        TiltFilter filter = new PredictiveTiltFilter(40, 1f);
+
+        float[] tilt = {0f};
+        for (int i = 0; i <= 10; i++) {
+            tilt[0] = i * 0.05f;
+            filter.filter(tilt, i * GAME_PERIOD_NANOS);
+        }
+
+        filter.reset();
+        tilt[0] = 0.2f;
+        filter.filter(tilt, 11 * GAME_PERIOD_NANOS);
+        tilt[0] = 0.2f;
+        filter.filter(tilt, 12 * GAME_PERIOD_NANOS);
+
+        assertEquals(0.2f, tilt[0], ACCEPTABLE_FLOAT_DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPredictiveNegativeHorizon() throws Exception {
+        new PredictiveTiltFilter(-1, 0.05f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLowPassInvalidCutoff() throws Exception {
+        new LowPassTiltFilter(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOneEuroInvalidBeta() throws Exception {
+        new OneEuroTiltFilter(1f, -1f, 1f);
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.nvanbenschoten.motion;
+
+import android.hardware.SensorEvent;
+import android.view.Surface;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2015 Nathan VanBenschoten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class TiltStateTest {
+
+    private static final float ACCEPTABLE_FLOAT_DELTA = 0.00001f;
+
+    private static final int PUBLISHES = 200000;
+    private static final int READERS = 3;
+
+    @Test
+    public void testSnapshotBeforePublish() throws Exception {
+        TiltState tiltState = new TiltState();
+        TiltState.Snapshot snapshot = new TiltState.Snapshot();
+
+        assertFalse(tiltState.snapshot(snapshot));
+        assertEquals(0, snapshot.getSequence());
+        assertEquals(0, tiltState.getSequence());
+    }
+
+    @Test
+    public void testSnapshotCopiesLatestPublish() throws Exception {
+        TiltState tiltState = new TiltState();
+        tiltState.publish(new float[]{0.1f, 0.2f, 0.3f}, 100);
+        tiltState.publish(new float[]{0.4f, 0.5f, 0.6f}, 200);
+
+        TiltState.Snapshot snapshot = new TiltState.Snapshot();
+        assertTrue(tiltState.snapshot(snapshot));
+
+        assertEquals(0.4f, snapshot.getYaw(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(0.5f, snapshot.getPitch(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(0.6f, snapshot.getRoll(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(200, snapshot.getTimestamp());
+        assertEquals(2, snapshot.getSequence());
+        assertEquals(2, tiltState.getSequence());
+    }
+
+    @Test
+    public void testConcurrentReadersNeverSeeTornState() throws Exception {
+        final TiltState tiltState = new TiltState();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+
+        // Every published tilt is derived from its timestamp, so a mix of two publishes is detectable
+        Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            readers[r] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    TiltState.Snapshot snapshot = new TiltState.Snapshot();
+                    long lastSequence = 0;
+
+                    while (lastSequence < PUBLISHES && failure.get() == null) {
+                        if (!tiltState.snapshot(snapshot)) continue;
+
+                        final long timestamp = snapshot.getTimestamp();
+                        if (snapshot.getYaw() != timestamp
+                                || snapshot.getPitch() != -timestamp
+                                || snapshot.getRoll() != timestamp * 0.5f
+                                || snapshot.getSequence() != timestamp) {
+                            failure.set("torn snapshot at sequence " + snapshot.getSequence());
+                        } else if (snapshot.getSequence() < lastSequence) {
+                            failure.set("sequence went backwards at " + snapshot.getSequence());
+                        }
+                        lastSequence = snapshot.getSequence();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+
+        final float[] tilt = new float[3];
+        for (int i = 1; i <= PUBLISHES; i++) {
+            tilt[0] = i;
+            tilt[1] = -i;
+            tilt[2] = i * 0.5f;
+            tiltState.publish(tilt, i);
+        }
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get(), failure.get());
+    }
+
+    @Test
+    public void testInterpreterPublishesInterpretedTilt() throws Exception {
+        SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+        SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.7f, 0.7f, 0.7f});
+        event.timestamp = 12345;
+        float[] interpreted = sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event);
+
+        TiltState.Snapshot snapshot = new TiltState.Snapshot();
+        assertTrue(sensorInterpreter.getTiltState().snapshot(snapshot));
+
+        assertEquals(interpreted[0], snapshot.getYaw(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(interpreted[1], snapshot.getPitch(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(interpreted[2], snapshot.getRoll(), ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(12345, snapshot.getTimestamp());
+        assertEquals(1, snapshot.getSequence());
+    }
+
+    @Test
+    public void testResetFromAnotherThreadRetargets() throws Exception {
+        final SensorInterpreter sensorInterpreter = new SensorInterpreter();
+        sensorInterpreter.setTargetVector(new float[]{0.5f, 0.6f, 0.7f});
+
+        Thread resetter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sensorInterpreter.reset();
+            }
+        });
+        resetter.start();
+        resetter.join();
+
+        // The next event sets the new target instead of being interpreted
+        SensorEvent event = TestUtils.mockSensorEvent(new float[]{0.1f, 0.2f, 0.3f, 0.927362f});
+        assertNull(sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event));
+
+        float[] interpreted = sensorInterpreter.interpretSensorEvent(Surface.ROTATION_0, event);
+        assertEquals(0f, interpreted[0], ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(0f, interpreted[1], ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(0f, interpreted[2], ACCEPTABLE_FLOAT_DELTA);
+        assertEquals(1, sensorInterpreter.getTiltState().getSequence());
+    }
+
+}